@@ -0,0 +1,225 @@
+package poker;
+
+/**
+ * Static methods for working with a set of playing cards stored in a single long,
+ * with one bit for each of the 52 cards in a pack.
+ *
+ * Card index is the suit's position in PlayingCard.SUITS times 13 plus the card type's
+ * position in PlayingCard.CARD_TYPES, the same order PlayingCard.newFullPack() uses.
+ * So bits 0-12 are the hearts from ace to king, bits 13-25 the diamonds and so on.
+ *
+ * Sets are plain longs so hands, decks and dead card tracking can use them without
+ * allocating any objects.
+ */
+public final class CardSet {
+
+	// Number of cards of each suit in the pack
+	private static final int TYPES_PER_SUIT = 13;
+
+	/**
+	 * The empty set and the set of all 52 cards in a pack
+	 */
+	public static final long EMPTY = 0L;
+	public static final long FULL_PACK = (1L << PlayingCard.UNIQUE_CARD_COUNT) - 1;
+
+	/*
+	 * Masks of all cards of one suit, indexed in the same order as PlayingCard.SUITS,
+	 * and all cards of one type, indexed in the same order as PlayingCard.CARD_TYPES
+	 */
+	private static final long[] SUIT_MASKS = new long[PlayingCard.SUITS.length];
+	private static final long[] TYPE_MASKS = new long[PlayingCard.CARD_TYPES.length];
+
+	static {
+		for (int suit=0; suit<SUIT_MASKS.length; suit++){
+			SUIT_MASKS[suit] = ((1L << TYPES_PER_SUIT) - 1) << (suit * TYPES_PER_SUIT);
+			for (int type=0; type<TYPE_MASKS.length; type++){
+				TYPE_MASKS[type] |= 1L << (suit * TYPES_PER_SUIT + type);
+			}
+		}
+	}
+
+	// No instances, all methods are static
+	private CardSet(){
+	}
+
+	/**
+	 * Returns the bit index of a card in a set, from 0 to 51, which is the card's ordinal
+	 */
+	public static int indexOf(PlayingCard card){
+		return card.ordinal();
+	}
+
+	/**
+	 * Returns the position of a suit char in PlayingCard.SUITS
+	 */
+	public static int suitIndex(char suit){
+		switch (suit){
+			case PlayingCard.HEARTS:
+				return 0;
+			case PlayingCard.DIAMONDS:
+				return 1;
+			case PlayingCard.CLUBS:
+				return 2;
+			case PlayingCard.SPADES:
+				return 3;
+			default:
+				throw new IllegalArgumentException("Unknown suit: " + suit);
+		}
+	}
+
+	/**
+	 * Returns a set holding every card in the array
+	 */
+	public static long of(PlayingCard[] cards){
+		long set = EMPTY;
+		for (int i=0; i<cards.length; i++){
+			set |= 1L << indexOf(cards[i]);
+		}
+		return set;
+	}
+
+	// Returns the set with the card added
+	public static long add(long set, PlayingCard card){
+		return set | (1L << indexOf(card));
+	}
+
+	// Returns the set with the card at the given index added
+	public static long add(long set, int cardIndex){
+		return set | (1L << cardIndex);
+	}
+
+	// Returns the set with the card removed
+	public static long remove(long set, PlayingCard card){
+		return set & ~(1L << indexOf(card));
+	}
+
+	// Returns the set with the card at the given index removed
+	public static long remove(long set, int cardIndex){
+		return set & ~(1L << cardIndex);
+	}
+
+	// Checks whether the card is in the set
+	public static boolean contains(long set, PlayingCard card){
+		return (set & (1L << indexOf(card))) != 0;
+	}
+
+	// Checks whether the card at the given index is in the set
+	public static boolean contains(long set, int cardIndex){
+		return (set & (1L << cardIndex)) != 0;
+	}
+
+	// Returns the number of cards in the set
+	public static int size(long set){
+		return Long.bitCount(set);
+	}
+
+	/**
+	 * Returns the mask of all cards of a suit, suitIndex in the same order as PlayingCard.SUITS
+	 */
+	public static long suitMask(int suitIndex){
+		return SUIT_MASKS[suitIndex];
+	}
+
+	/**
+	 * Returns the mask of all cards of a type, typeIndex in the same order as PlayingCard.CARD_TYPES
+	 */
+	public static long typeMask(int typeIndex){
+		return TYPE_MASKS[typeIndex];
+	}
+
+	// Returns how many cards of the suit are in the set
+	public static int countSuit(long set, int suitIndex){
+		return Long.bitCount(set & SUIT_MASKS[suitIndex]);
+	}
+
+	// Returns how many cards of the type are in the set
+	public static int countType(long set, int typeIndex){
+		return Long.bitCount(set & TYPE_MASKS[typeIndex]);
+	}
+
+	/**
+	 * Returns the 13 bit mask of the card types held in one suit, bit 0 for the ace up to bit 12 for the king
+	 */
+	public static int suitTypes(long set, int suitIndex){
+		return (int) ((set >>> (suitIndex * TYPES_PER_SUIT)) & ((1L << TYPES_PER_SUIT) - 1));
+	}
+
+	/**
+	 * Returns the lowest card index in a set, or 64 if the set is empty.
+	 * Loop over a set with: for (long s = set; s != 0; s &= s - 1) { lowestIndex(s) ... }
+	 */
+	public static int lowestIndex(long set){
+		return Long.numberOfTrailingZeros(set);
+	}
+
+	/**
+	 * Returns a String of the cards in the set in index order, eg. "AH 10H KD"
+	 */
+	public static String toString(long set){
+		StringBuilder output = new StringBuilder();
+		for (long remaining = set; remaining != 0; remaining &= remaining - 1){
+			int index = lowestIndex(remaining);
+			if (output.length() > 0){
+				output.append(' ');
+			}
+			output.append(PlayingCard.fromOrdinal(index));
+		}
+		return output.toString();
+	}
+
+	/*
+	 * Main method tests the card set
+	 * Simply run and read the error status at the bottom of the console
+	 */
+	public static void main(String[] args) {
+
+		boolean errorFound = false;
+		PlayingCard[] pack = PlayingCard.newFullPack();
+
+		// Every card in a full pack should have its own index in pack order
+		long set = EMPTY;
+		for (int i=0; i<pack.length; i++){
+			if (indexOf(pack[i]) != i || contains(set, pack[i])){
+				System.out.println("ERROR: CARD " + pack[i] + " HAS WRONG INDEX " + indexOf(pack[i]));
+				errorFound = true;
+			}
+			set = add(set, pack[i]);
+		}
+		if (set != FULL_PACK || size(set) != 52){
+			System.out.println("ERROR: FULL PACK SET WRONG " + toString(set));
+			errorFound = true;
+		}
+
+		// Each suit and type should have the right number of cards
+		for (int i=0; i<PlayingCard.SUITS.length; i++){
+			if (countSuit(set, i) != 13 || suitTypes(set, i) != 0x1FFF){
+				System.out.println("ERROR: SUIT MASK WRONG FOR " + PlayingCard.SUITS[i]);
+				errorFound = true;
+			}
+		}
+		for (int i=0; i<PlayingCard.CARD_TYPES.length; i++){
+			if (countType(set, i) != 4){
+				System.out.println("ERROR: TYPE MASK WRONG FOR " + PlayingCard.CARD_TYPES[i]);
+				errorFound = true;
+			}
+		}
+
+		// Removing cards
+		set = remove(set, pack[0]);
+		set = remove(set, pack[51]);
+		System.out.println(toString(set & suitMask(0)));
+		if (contains(set, pack[0]) || contains(set, 51) || size(set) != 50 || countType(set, 0) != 3){
+			System.out.println("ERROR: REMOVING CARDS FROM SET");
+			errorFound = true;
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
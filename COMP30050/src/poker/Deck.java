@@ -0,0 +1,66 @@
+package poker;
+
+/**
+ * A deck that cards are dealt from the top of and returned to the bottom of, so hands,
+ * players and tables can deal from any kind of deck: the semaphore locked DeckOfCards,
+ * the LockFreeDeckOfCards or a multi pack Shoe.
+ */
+public interface Deck {
+
+	/**
+	 * Returns the next card from the top of the deck, or null if there are none left
+	 */
+	PlayingCard dealNext() throws InterruptedException;
+
+	/**
+	 * Deals count cards from the top of the deck into the start of the given array
+	 * Returns false and deals nothing if fewer than count cards are left
+	 */
+	boolean deal(int count, PlayingCard[] into) throws InterruptedException;
+
+	/**
+	 * Deals a hand to each of the given number of players, one card to each player in turn
+	 * as at the table, from a single block of the deck
+	 * Returns the hands indexed by player, or null if there are not enough cards left for all of them
+	 */
+	default PlayingCard[][] dealRound(int players) throws InterruptedException{
+		PlayingCard[] block = new PlayingCard[players * HandOfCards.CARDS_HELD];
+		if (!deal(block.length, block)){
+			return null;
+		}
+		return handsFromBlock(block, players);
+	}
+
+	/**
+	 * Returns a card to the bottom of the deck
+	 * Cards that are not currently dealt out of this deck are ignored
+	 */
+	void returnCard(PlayingCard discarded) throws InterruptedException;
+
+	/**
+	 * Shuffles the deck with the deck's shuffle strategy
+	 * Note: Do not shuffle without resetting
+	 */
+	void shuffle();
+
+	/**
+	 * Puts the dealt cards back in the deck
+	 * Cards will need to be shuffled for a new game
+	 */
+	void reset();
+
+	/**
+	 * Returns the CardSet of cards currently dealt out of the deck
+	 */
+	long getDealtCards();
+
+	// Splits a block of cards dealt one to each player in turn into the players' hands
+	private static PlayingCard[][] handsFromBlock(PlayingCard[] block, int players){
+		PlayingCard[][] hands = new PlayingCard[players][block.length / players];
+		for (int i=0; i<block.length; i++){
+			hands[i % players][i / players] = block[i];
+		}
+		return hands;
+	}
+
+}
@@ -2,87 +2,220 @@ package poker;
 
 import java.util.concurrent.Semaphore;
 import java.util.ArrayList;
-import java.util.Random;
 
-public class DeckOfCards {
+public class DeckOfCards implements Deck {
 
+	/*
+	 * The deck array is used as a ring. The cards still in the deck run from index top
+	 * round to the bottom, and the cardsDealt slots after the bottom hold the cards dealt out.
+	 * positions holds the index in the deck array of each card by ordinal, so a returned
+	 * card can be found without searching
+	 */
 	private int cardsDealt;
+	private int top;
 	private PlayingCard[] deck;
+	private int[] positions;
 	private Semaphore dealerAvailable;
+	private ShuffleStrategy shuffler;
+	
+	// CardSet of the cards currently dealt out of the deck
+	private long dealtCards;
 	
 	/*
 	 * Constructor initializes internal fields of deck and semaphore
 	 * Shuffles and resets deck to leave ready for play
 	 */
 	public DeckOfCards(){
+		this(new FisherYatesShuffle());
+	}
+	
+	/*
+	 * Constructor takes the shuffle to use, eg. a seeded one for reproducible games
+	 */
+	public DeckOfCards(ShuffleStrategy shuffler){
+		this.shuffler = shuffler;
 		dealerAvailable = new Semaphore(1);
 		deck = PlayingCard.newFullPack();
-		shuffle();
-		reset();
+		positions = new int[deck.length];
+		// Not through shuffle() and reset() as subclasses may not be set up yet
+		shuffler.shuffle(deck);
+		updatePositions();
+		top = 0;
+		cardsDealt = 0;
+		dealtCards = CardSet.EMPTY;
 	}
 	
 	/**
-	 * Returns next non-dealt card and increments cardsDealt index
+	 * Returns next non-dealt card from the top of the deck and increments cardsDealt
 	 * Uses the semaphore to lock down a critical section in case parallel access occurs
 	 */
+	@Override
 	public PlayingCard dealNext() throws InterruptedException{
-		dealerAvailable.acquire();
+		acquireDealer();
 		PlayingCard outputCard = null;
-		if (cardsDealt < 52){
-			outputCard = deck[cardsDealt];
+		if (cardsDealt < deck.length){
+			outputCard = deck[top];
+			dealtCards = CardSet.add(dealtCards, outputCard);
+			top = nextIndex(top);
 			cardsDealt++;
 		}
-		dealerAvailable.release();
+		releaseDealer();
 		return outputCard;
 	}
 	
 	/**
-	 * Shuffles the deck by randomly selecting two card indexes in the deck array and swapping the cards
-	 * This is repeated by the size of the deck squared times to ensure the deck is thoroughly shuffled
+	 * Deals count cards from the top of the deck into the start of the given array,
+	 * taking the semaphore once for the whole block
+	 * Returns false and deals nothing if fewer than count cards are left
+	 */
+	@Override
+	public boolean deal(int count, PlayingCard[] into) throws InterruptedException{
+		acquireDealer();
+		boolean enoughCards = count <= deck.length - cardsDealt;
+		if (enoughCards){
+			for (int i=0; i<count; i++){
+				into[i] = deck[top];
+				dealtCards = CardSet.add(dealtCards, into[i]);
+				top = nextIndex(top);
+			}
+			cardsDealt += count;
+		}
+		releaseDealer();
+		return enoughCards;
+	}
+	
+	/**
+	 * Shuffles the deck with the deck's shuffle strategy, a Fisher-Yates shuffle unless another was given
 	 * Note: Do not shuffle without resetting
 	 */
+	@Override
 	public void shuffle(){
-		Random rand = new Random(System.currentTimeMillis());
-		for(int i=0; i<(deck.length*deck.length); i++){
-			int index1, index2;
-			do {
-				index1 = rand.nextInt(deck.length);
-				index2 = rand.nextInt(deck.length);
-			} while (index1 == index2);
-			
-			PlayingCard temp = deck[index1];
-			deck[index1] = deck[index2];
-			deck[index2] = temp;
-		}
+		shuffler.shuffle(deck);
+		updatePositions();
 	}
 	
 	/**
 	 * Returns a card to the bottom of the deck.
+	 * The card is swapped into the first dealt slot after the bottom, so the cards left in
+	 * the deck keep their order and the returned card comes back only after all of them
 	 * Uses semaphore to ensure parallel access is not an issue
+	 * Cards that are not currently dealt out of this deck are ignored
 	 */
+	@Override
 	public void returnCard(PlayingCard discarded) throws InterruptedException{
-		int previousIndex = 0;
-		dealerAvailable.acquire();
-		// Find previous index of card in the deck array
-		for (int i=0; i<deck.length && !deck[i].equals(discarded); i++){
-			previousIndex = i;
+		acquireDealer();
+		if (discarded == null || !CardSet.contains(dealtCards, discarded)){
+			releaseDealer();
+			return;
 		}
-		// Move all other cards up one index in array
-		for (int i=previousIndex; i<deck.length-1; i++){
-			deck[i] = deck[i+1];
-		}
-		// Put discarded on bottom of deck
-		deck[deck.length-1] = discarded;
+		dealtCards = CardSet.remove(dealtCards, discarded);
+		int bottom = (top + deck.length - cardsDealt) % deck.length;
+		int previousIndex = positions[discarded.ordinal()];
+		PlayingCard displaced = deck[bottom];
+		deck[previousIndex] = displaced;
+		positions[displaced.ordinal()] = previousIndex;
+		deck[bottom] = discarded;
+		positions[discarded.ordinal()] = bottom;
 		cardsDealt--;
-		dealerAvailable.release();;
+		releaseDealer();
 	}
 	
 	/**
-	 * Sets cards dealt to zero
+	 * Sets cards dealt to zero, putting the dealt cards back on top of the deck
 	 * Cards will need to be shuffled for a new game
 	 */
+	@Override
 	public void reset(){
+		top = (top + deck.length - cardsDealt) % deck.length;
 		cardsDealt = 0;
+		dealtCards = CardSet.EMPTY;
+	}
+	
+	/**
+	 * Takes the dealer before the deck is changed, so only one thread deals at a time
+	 * Subclasses used by a single thread can override this and releaseDealer() to do nothing
+	 */
+	protected void acquireDealer() throws InterruptedException{
+		dealerAvailable.acquire();
+	}
+	
+	// Gives the dealer back after the deck is changed
+	protected void releaseDealer(){
+		dealerAvailable.release();
+	}
+	
+	// Returns the index after the given one in the deck ring
+	private int nextIndex(int index){
+		index++;
+		return index == deck.length ? 0 : index;
+	}
+	
+	// Records where each card is in the deck array
+	private void updatePositions(){
+		for (int i=0; i<deck.length; i++){
+			positions[deck[i].ordinal()] = i;
+		}
+	}
+	
+	/**
+	 * The order of a deck and which of its cards are dealt, saved by snapshot() so the
+	 * deck can be put back to that point with restore(). A snapshot can be filled again
+	 * by snapshot(Snapshot) to save a deck many times without allocating.
+	 * The fields are read and written directly by CardCodec
+	 */
+	public static final class Snapshot {
+		
+		final byte[] order = new byte[PlayingCard.UNIQUE_CARD_COUNT];
+		int top;
+		int cardsDealt;
+		long dealtCards;
+	}
+	
+	/**
+	 * Saves the order of the deck and the cards dealt to a new snapshot
+	 */
+	public Snapshot snapshot() throws InterruptedException{
+		return snapshot(new Snapshot());
+	}
+	
+	/**
+	 * Saves the order of the deck and the cards dealt into the given snapshot, returning it
+	 */
+	public Snapshot snapshot(Snapshot into) throws InterruptedException{
+		acquireDealer();
+		for (int i=0; i<deck.length; i++){
+			into.order[i] = (byte) deck[i].ordinal();
+		}
+		into.top = top;
+		into.cardsDealt = cardsDealt;
+		into.dealtCards = dealtCards;
+		releaseDealer();
+		return into;
+	}
+	
+	/**
+	 * Puts the deck back to the point the snapshot was taken, including the order of any
+	 * returned cards. The snapshot can be restored any number of times
+	 */
+	public void restore(Snapshot snapshot) throws InterruptedException{
+		acquireDealer();
+		for (int i=0; i<deck.length; i++){
+			deck[i] = PlayingCard.fromOrdinal(snapshot.order[i]);
+			positions[snapshot.order[i]] = i;
+		}
+		top = snapshot.top;
+		cardsDealt = snapshot.cardsDealt;
+		dealtCards = snapshot.dealtCards;
+		releaseDealer();
+	}
+	
+	/**
+	 * Returns the CardSet of cards currently dealt out of the deck
+	 * Useful for tracking dead cards without scanning the deck
+	 */
+	@Override
+	public long getDealtCards(){
+		return dealtCards;
 	}
 	
 	/*
@@ -159,6 +292,102 @@ public class DeckOfCards {
 			errorFound = true;
 		}
 		
+		// Deal hands and discard from the middle of them as players would, no card should
+		// ever be out twice and the dealt cards should always match the deck's CardSet
+		DeckOfCards drawDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		for (int round=0; round<1000 && !errorFound; round++){
+			drawDeck.shuffle();
+			drawDeck.reset();
+			PlayingCard[] hand = new PlayingCard[5];
+			for (int i=0; i<hand.length; i++){
+				hand[i] = drawDeck.dealNext();
+			}
+			for (int draw=0; draw<8; draw++){
+				long held = CardSet.of(hand);
+				if (CardSet.size(held) != hand.length || held != drawDeck.getDealtCards()){
+					System.out.println("ERROR: DECK DEALT A CARD ALREADY OUT AFTER DISCARDS");
+					errorFound = true;
+					break;
+				}
+				for (int i=1; i<4; i++){
+					drawDeck.returnCard(hand[i]);
+					hand[i] = drawDeck.dealNext();
+				}
+			}
+		}
+		
+		// A round dealt to four players should give each player every fourth card of the deck
+		DeckOfCards roundDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		DeckOfCards sameDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		PlayingCard[][] round = roundDeck.dealRound(4);
+		for (int card=0; card<5; card++){
+			for (int player=0; player<4; player++){
+				if (!round[player][card].equals(sameDeck.dealNext())){
+					System.out.println("ERROR: ROUND NOT DEALT ONE CARD TO EACH PLAYER IN TURN");
+					errorFound = true;
+				}
+			}
+		}
+		if (roundDeck.getDealtCards() != sameDeck.getDealtCards()){
+			System.out.println("ERROR: ROUND DEALT CARDS NOT MARKED AS DEALT");
+			errorFound = true;
+		}
+		
+		// Dealing more cards than are left should deal none
+		PlayingCard[] block = new PlayingCard[52];
+		if (roundDeck.deal(33, block) || roundDeck.dealRound(7) != null || !roundDeck.deal(32, block)
+				|| roundDeck.getDealtCards() != CardSet.FULL_PACK || roundDeck.dealNext() != null){
+			System.out.println("ERROR: DEALING A BLOCK WHEN NOT ENOUGH CARDS LEFT");
+			errorFound = true;
+		}
+		
+		// A restored deck should deal the same cards again, including returned ones
+		DeckOfCards branchDeck = new DeckOfCards();
+		PlayingCard[] hand = new PlayingCard[5];
+		branchDeck.deal(hand.length, hand);
+		branchDeck.returnCard(hand[2]);
+		Snapshot saved = branchDeck.snapshot();
+		PlayingCard[] firstBranch = new PlayingCard[48];
+		branchDeck.deal(firstBranch.length, firstBranch);
+		for (int branch=0; branch<3; branch++){
+			branchDeck.restore(saved);
+			if (branchDeck.getDealtCards() != CardSet.of(hand) - (1L << hand[2].ordinal())){
+				System.out.println("ERROR: RESTORED DECK HAS WRONG CARDS DEALT");
+				errorFound = true;
+			}
+			for (int i=0; i<firstBranch.length; i++){
+				if (branchDeck.dealNext() != firstBranch[i]){
+					System.out.println("ERROR: RESTORED DECK DEALING IN A DIFFERENT ORDER");
+					errorFound = true;
+					break;
+				}
+			}
+			if (branchDeck.dealNext() != null){
+				System.out.println("ERROR: RESTORED DECK DEALING CARDS WHEN NONE ARE LEFT");
+				errorFound = true;
+			}
+		}
+		
+		// Filling the same snapshot again should replace what it held
+		branchDeck.snapshot(saved);
+		branchDeck.reset();
+		branchDeck.restore(saved);
+		if (branchDeck.dealNext() != null || branchDeck.getDealtCards() != CardSet.FULL_PACK){
+			System.out.println("ERROR: SNAPSHOT NOT REFILLED");
+			errorFound = true;
+		}
+		
+		// Two decks shuffled with the same seed should deal the same cards
+		DeckOfCards firstSeeded = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		DeckOfCards secondSeeded = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		for (int i=0; i<52; i++){
+			if (!firstSeeded.dealNext().equals(secondSeeded.dealNext())){
+				System.out.println("ERROR: DECKS WITH THE SAME SEED DEALING DIFFERENT CARDS");
+				errorFound = true;
+				break;
+			}
+		}
+		
 		// Print error status
 		if (errorFound){
 			System.out.println("###Error found, please check above in console for cause.");
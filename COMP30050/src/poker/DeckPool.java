@@ -0,0 +1,191 @@
+package poker;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Pool of decks shuffled ahead of time by a background thread, so a table starting a hand
+ * can take a ready deck instead of building and shuffling one itself.
+ *
+ * Decks given back after a hand are shuffled and reset by the producer thread and put back
+ * in the ready queue. When the ready queue is empty take() still returns straight away
+ * with a deck made on the calling thread, which is counted as a miss.
+ *
+ * The producer is a daemon thread, stopped by close().
+ */
+public class DeckPool implements AutoCloseable {
+
+	private final Supplier<? extends Deck> deckFactory;
+	private final BlockingQueue<Deck> readyDecks;
+	private final BlockingQueue<Deck> usedDecks;
+	private final Thread producer;
+
+	// Counts of takes served from the ready queue and takes that had to make a deck
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/*
+	 * Constructor takes the number of ready decks to keep and starts filling the pool
+	 */
+	public DeckPool(int capacity){
+		this(capacity, DeckOfCards::new);
+	}
+
+	/*
+	 * Constructor takes the number of ready decks to keep and how to make a new deck,
+	 * eg. LockFreeDeckOfCards::new or a seeded shuffle, and starts filling the pool
+	 */
+	public DeckPool(int capacity, Supplier<? extends Deck> deckFactory){
+		this.deckFactory = deckFactory;
+		readyDecks = new ArrayBlockingQueue<Deck>(capacity);
+		usedDecks = new ArrayBlockingQueue<Deck>(capacity);
+		producer = new Thread(this::produce, "deck-pool-producer");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Returns a shuffled deck with no cards dealt, from the ready queue if there is one
+	 */
+	public Deck take(){
+		Deck deck = readyDecks.poll();
+		if (deck != null){
+			hits.increment();
+			return deck;
+		}
+		misses.increment();
+		return deckFactory.get();
+	}
+
+	/**
+	 * Gives a deck back to be shuffled and used again
+	 * The deck must not be used by the caller afterwards. If the pool already has enough
+	 * decks waiting it is dropped
+	 */
+	public void giveBack(Deck deck){
+		if (deck != null){
+			usedDecks.offer(deck);
+		}
+	}
+
+	// Accessor for the number of takes served from the ready queue
+	public long getHits(){
+		return hits.sum();
+	}
+
+	// Accessor for the number of takes that had to make a new deck on the calling thread
+	public long getMisses(){
+		return misses.sum();
+	}
+
+	// Accessor for the number of decks ready to take
+	public int getReadyCount(){
+		return readyDecks.size();
+	}
+
+	/**
+	 * Stops the producer thread. Decks can still be taken, but are made on the calling thread
+	 */
+	public void close(){
+		producer.interrupt();
+	}
+
+	/**
+	 * Keeps the ready queue full, recycling given back decks before making new ones
+	 */
+	private void produce(){
+		try {
+			while (!Thread.currentThread().isInterrupted()){
+				Deck deck = usedDecks.poll();
+				if (deck == null){
+					deck = deckFactory.get();
+				}
+				else {
+					deck.shuffle();
+					deck.reset();
+				}
+				readyDecks.put(deck);
+			}
+		}
+		catch (InterruptedException e){
+			// Closed, let the thread end
+		}
+	}
+
+	/*
+	 * Main method checks decks from the pool are shuffled and ready to deal, and times
+	 * taking a deck from the pool against making one for each hand
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		DeckPool pool = new DeckPool(8);
+
+		// Give the producer time to fill the pool
+		for (int i=0; i<100 && pool.getReadyCount() < 8; i++){
+			Thread.sleep(10);
+		}
+
+		// Each deck taken should deal the whole pack once, in a different order each time
+		PlayingCard firstCard = null;
+		boolean orderChanged = false;
+		for (int hand=0; hand<100; hand++){
+			Deck deck = pool.take();
+			if (deck.getDealtCards() != CardSet.EMPTY){
+				System.out.println("ERROR: DECK FROM POOL HAS CARDS DEALT");
+				errorFound = true;
+			}
+			PlayingCard[] pack = new PlayingCard[PlayingCard.UNIQUE_CARD_COUNT];
+			if (!deck.deal(pack.length, pack) || CardSet.of(pack) != CardSet.FULL_PACK){
+				System.out.println("ERROR: DECK FROM POOL DID NOT DEAL A FULL PACK");
+				errorFound = true;
+			}
+			if (firstCard != null && !pack[0].equals(firstCard)){
+				orderChanged = true;
+			}
+			firstCard = pack[0];
+			pool.giveBack(deck);
+			// Let the producer keep up, as a table would between hands
+			Thread.sleep(1);
+		}
+		if (!orderChanged){
+			System.out.println("ERROR: DECKS FROM POOL NOT SHUFFLED");
+			errorFound = true;
+		}
+		System.out.println("Hits " + pool.getHits() + ", misses " + pool.getMisses());
+		if (pool.getHits() == 0){
+			System.out.println("ERROR: NO DECKS TAKEN FROM THE READY QUEUE");
+			errorFound = true;
+		}
+
+		// Time hand starts with a deck from the pool against a new deck each time
+		long pooledTime = 0, newTime = 0;
+		int hands = 2000;
+		for (int hand=0; hand<hands; hand++){
+			long start = System.nanoTime();
+			Deck pooled = pool.take();
+			pooledTime += System.nanoTime() - start;
+			pool.giveBack(pooled);
+			start = System.nanoTime();
+			new DeckOfCards();
+			newTime += System.nanoTime() - start;
+			if (hand % 10 == 0){
+				Thread.sleep(1);
+			}
+		}
+		System.out.println("Average hand start: deck from pool " + pooledTime/hands + "ns, new deck "
+				+ newTime/hands + "ns. Hits " + pool.getHits() + ", misses " + pool.getMisses());
+		pool.close();
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Fisher-Yates shuffle, which walks down the array once swapping each card with a random
+ * card at or below it. Every order of the cards is equally likely and a pack of 52 takes
+ * 51 swaps.
+ *
+ * Any RandomGenerator can be used, eg. SplittableRandom or L64X128MixRandom for speed or
+ * SecureRandom where the order must not be predictable. Most generators are not thread safe,
+ * so each deck should have its own shuffle rather than sharing one between threads.
+ */
+public class FisherYatesShuffle implements ShuffleStrategy {
+
+	private final RandomGenerator random;
+
+	/**
+	 * Constructor uses a SplittableRandom with a different seed each time it is called
+	 */
+	public FisherYatesShuffle(){
+		this(new SplittableRandom());
+	}
+
+	/**
+	 * Constructor takes the random number generator to shuffle with
+	 */
+	public FisherYatesShuffle(RandomGenerator random){
+		this.random = random;
+	}
+
+	/**
+	 * Returns a shuffle that gives the same sequence of card orders every time for the same seed
+	 */
+	public static FisherYatesShuffle seeded(long seed){
+		return new FisherYatesShuffle(new SplittableRandom(seed));
+	}
+
+	public void shuffle(PlayingCard[] cards, int from, int to){
+		for (int i=to-1; i>from; i--){
+			int j = from + random.nextInt(i - from + 1);
+			PlayingCard temp = cards[i];
+			cards[i] = cards[j];
+			cards[j] = temp;
+		}
+	}
+
+	/**
+	 * Shuffles a run of cards that may wrap round the end of the array in place
+	 */
+	@Override
+	public void shuffleRing(PlayingCard[] cards, int start, int count){
+		for (int i=count-1; i>0; i--){
+			int a = (start + i) % cards.length;
+			int b = (start + random.nextInt(i + 1)) % cards.length;
+			PlayingCard temp = cards[a];
+			cards[a] = cards[b];
+			cards[b] = temp;
+		}
+	}
+
+	/*
+	 * Main method checks every order of three cards comes up equally often, that seeded
+	 * shuffles repeat and that a shuffled range leaves the other cards alone
+	 */
+	public static void main(String[] args) {
+
+		boolean errorFound = false;
+		FisherYatesShuffle shuffle = seeded(30050);
+
+		// Each of the 6 orders of three cards should come up about a sixth of the time
+		PlayingCard[] pack = PlayingCard.newFullPack();
+		int[] orderCounts = new int[6];
+		int trials = 600000;
+		for (int i=0; i<trials; i++){
+			PlayingCard[] cards = {pack[0], pack[1], pack[2]};
+			shuffle.shuffle(cards);
+			int order = cards[0].ordinal() * 2 + (cards[1].ordinal() > cards[2].ordinal() ? 1 : 0);
+			orderCounts[order]++;
+		}
+		for (int order=0; order<orderCounts.length; order++){
+			System.out.println("Order " + order + ": " + orderCounts[order] + ", EXPECTED ABOUT " + trials/6);
+			if (Math.abs(orderCounts[order] - trials/6) > trials/6/50){
+				System.out.println("####### Failed test above");
+				errorFound = true;
+			}
+		}
+
+		// Two shuffles with the same seed should give the same order
+		PlayingCard[] first = PlayingCard.newFullPack();
+		PlayingCard[] second = PlayingCard.newFullPack();
+		seeded(42).shuffle(first);
+		seeded(42).shuffle(second);
+		for (int i=0; i<first.length; i++){
+			if (first[i] != second[i]){
+				System.out.println("ERROR: SEEDED SHUFFLES GAVE DIFFERENT ORDERS");
+				errorFound = true;
+				break;
+			}
+		}
+
+		// Shuffling a range should not move cards outside it
+		PlayingCard[] partial = PlayingCard.newFullPack();
+		shuffle.shuffle(partial, 10, 20);
+		long inRange = CardSet.EMPTY;
+		for (int i=0; i<partial.length; i++){
+			if (i >= 10 && i < 20){
+				inRange = CardSet.add(inRange, partial[i]);
+			}
+			else if (partial[i] != pack[i]){
+				System.out.println("ERROR: CARD OUTSIDE SHUFFLED RANGE MOVED AT " + i);
+				errorFound = true;
+			}
+		}
+		if (CardSet.size(inRange) != 10 || CardSet.lowestIndex(inRange) != 10){
+			System.out.println("ERROR: SHUFFLED RANGE LOST CARDS");
+			errorFound = true;
+		}
+
+		// Shuffling a run that wraps round should only move cards within it
+		PlayingCard[] ring = PlayingCard.newFullPack();
+		shuffle.shuffleRing(ring, 47, 10);
+		long inRun = CardSet.EMPTY;
+		for (int i=0; i<ring.length; i++){
+			if (i >= 47 || i < 5){
+				inRun = CardSet.add(inRun, ring[i]);
+			}
+			else if (ring[i] != pack[i]){
+				System.out.println("ERROR: CARD OUTSIDE SHUFFLED RING RUN MOVED AT " + i);
+				errorFound = true;
+			}
+		}
+		if (CardSet.size(inRun) != 10){
+			System.out.println("ERROR: SHUFFLED RING RUN LOST CARDS");
+			errorFound = true;
+		}
+
+		// Time a full pack shuffle
+		PlayingCard[] timed = PlayingCard.newFullPack();
+		for (int round=0; round<3; round++){
+			long start = System.nanoTime();
+			for (int i=0; i<1000000; i++){
+				shuffle.shuffle(timed);
+			}
+			System.out.println("1000000 shuffles in " + (System.nanoTime() - start)/1000000 + "ms");
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,316 @@
+package poker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Deck of cards that can be dealt from and returned to by many threads at once without
+ * a lock. Behaves like DeckOfCards: cards are dealt from the top, returned cards go to the
+ * bottom, and dealNext() gives null when no cards are left. Neither call blocks, so
+ * neither throws InterruptedException.
+ *
+ * The cards not dealt are held in a ring of slots. Dealing claims the next slot from the
+ * top and returning claims the next slot at the bottom, each with a compare and set on a
+ * position counter. Each slot also has a sequence number telling whether it holds a card
+ * ready to deal or is free to be written, so a thread never reads a slot another thread
+ * is still filling. The ring has more slots than there are cards, so it can never be full.
+ *
+ * A card being returned at the same moment the deck runs out may not be seen by dealNext()
+ * until the return has finished. shuffle() and reset() are not thread safe and should only
+ * be called between games.
+ */
+public class LockFreeDeckOfCards implements Deck {
+
+	// Number of slots in the ring, a power of two larger than a pack
+	private static final int RING_SIZE = 64;
+	private static final int RING_MASK = RING_SIZE - 1;
+
+	private final ShuffleStrategy shuffler;
+
+	// The whole pack in shuffled order, dealt from the top after a reset
+	private final PlayingCard[] pack;
+
+	/*
+	 * slots hold the cards still in the deck. sequences[i] is the position a deal may take
+	 * slot i at plus one when it holds a card, or the position a return may fill it at when free
+	 */
+	private final AtomicReferenceArray<PlayingCard> slots = new AtomicReferenceArray<PlayingCard>(RING_SIZE);
+	private final AtomicLongArray sequences = new AtomicLongArray(RING_SIZE);
+
+	// Positions of the top and bottom of the deck in the ring, counting up without wrapping
+	private final AtomicLong topPosition = new AtomicLong();
+	private final AtomicLong bottomPosition = new AtomicLong();
+
+	// CardSet of the cards currently dealt out of the deck
+	private final AtomicLong dealtCards = new AtomicLong();
+
+	/*
+	 * Constructor shuffles and resets the deck to leave ready for play
+	 */
+	public LockFreeDeckOfCards(){
+		this(new FisherYatesShuffle());
+	}
+
+	/*
+	 * Constructor takes the shuffle to use, eg. a seeded one for reproducible games
+	 */
+	public LockFreeDeckOfCards(ShuffleStrategy shuffler){
+		this.shuffler = shuffler;
+		pack = PlayingCard.newFullPack();
+		shuffle();
+		reset();
+	}
+
+	/**
+	 * Returns the next card from the top of the deck, or null if there are none left
+	 */
+	@Override
+	public PlayingCard dealNext(){
+		while (true){
+			long position = topPosition.get();
+			int slot = (int) (position & RING_MASK);
+			long sequence = sequences.getAcquire(slot);
+			if (sequence < position + 1){
+				// Slot not filled yet, so the deck is empty
+				return null;
+			}
+			if (sequence == position + 1 && topPosition.compareAndSet(position, position + 1)){
+				PlayingCard card = slots.getPlain(slot);
+				slots.setPlain(slot, null);
+				// Free the slot for the return that will reach it one lap of the ring later
+				sequences.setRelease(slot, position + RING_SIZE);
+				addDealt(card);
+				return card;
+			}
+			// Another thread took this card first, try again with the next one
+		}
+	}
+
+	/**
+	 * Deals count cards from the top of the deck into the start of the given array,
+	 * claiming the whole block with a single compare and set
+	 * Returns false and deals nothing if fewer than count cards are left
+	 */
+	@Override
+	public boolean deal(int count, PlayingCard[] into){
+		while (true){
+			long position = topPosition.get();
+			boolean enoughCards = true;
+			boolean stale = false;
+			for (int i=0; i<count && enoughCards && !stale; i++){
+				long sequence = sequences.getAcquire((int) ((position + i) & RING_MASK));
+				enoughCards = sequence >= position + i + 1;
+				stale = sequence > position + i + 1;
+			}
+			if (stale){
+				// Another thread dealt from the top meanwhile
+				continue;
+			}
+			if (!enoughCards){
+				return false;
+			}
+			if (topPosition.compareAndSet(position, position + count)){
+				for (int i=0; i<count; i++){
+					int slot = (int) ((position + i) & RING_MASK);
+					into[i] = slots.getPlain(slot);
+					slots.setPlain(slot, null);
+					sequences.setRelease(slot, position + i + RING_SIZE);
+					addDealt(into[i]);
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns a card to the bottom of the deck
+	 * Cards that are not currently dealt out of this deck are ignored
+	 */
+	@Override
+	public void returnCard(PlayingCard discarded){
+		if (discarded == null || !removeDealt(discarded)){
+			return;
+		}
+		while (true){
+			long position = bottomPosition.get();
+			int slot = (int) (position & RING_MASK);
+			if (sequences.getAcquire(slot) == position && bottomPosition.compareAndSet(position, position + 1)){
+				slots.setPlain(slot, discarded);
+				sequences.setRelease(slot, position + 1);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Shuffles the pack with the deck's shuffle strategy
+	 * Note: Do not shuffle without resetting
+	 */
+	@Override
+	public void shuffle(){
+		shuffler.shuffle(pack);
+	}
+
+	/**
+	 * Puts every card back in the deck in the order of the last shuffle
+	 * Cards will need to be shuffled for a new game
+	 */
+	@Override
+	public void reset(){
+		for (int slot=0; slot<RING_SIZE; slot++){
+			if (slot < pack.length){
+				slots.setPlain(slot, pack[slot]);
+				sequences.setPlain(slot, slot + 1);
+			}
+			else {
+				slots.setPlain(slot, null);
+				sequences.setPlain(slot, slot);
+			}
+		}
+		topPosition.set(0);
+		bottomPosition.set(pack.length);
+		dealtCards.set(CardSet.EMPTY);
+	}
+
+	/**
+	 * Returns the CardSet of cards currently dealt out of the deck
+	 */
+	@Override
+	public long getDealtCards(){
+		return dealtCards.get();
+	}
+
+	// Marks a card as dealt
+	private void addDealt(PlayingCard card){
+		long bit = 1L << card.ordinal();
+		dealtCards.getAndAccumulate(bit, (cards, added) -> cards | added);
+	}
+
+	// Marks a card as no longer dealt, returning false if it was not dealt
+	private boolean removeDealt(PlayingCard card){
+		long bit = 1L << card.ordinal();
+		long before = dealtCards.getAndAccumulate(bit, (cards, removed) -> cards & ~removed);
+		return (before & bit) != 0;
+	}
+
+	/*
+	 * Main method checks the deck deals each card once and returns cards to the bottom,
+	 * then deals from many threads at once and times the same churn of deals and returns
+	 * against the semaphore locked DeckOfCards
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		LockFreeDeckOfCards testDeck = new LockFreeDeckOfCards();
+
+		// Deal the pack returning every other card, then only the returned cards should come
+		// out and then nothing
+		long dealt = CardSet.EMPTY, returned = CardSet.EMPTY;
+		for (int i=0; i<26; i++){
+			dealt = CardSet.add(dealt, testDeck.dealNext());
+			PlayingCard discarded = testDeck.dealNext();
+			testDeck.returnCard(discarded);
+			returned = CardSet.add(returned, discarded);
+		}
+		for (int i=0; i<26; i++){
+			PlayingCard nextCard = testDeck.dealNext();
+			if (nextCard == null || CardSet.contains(dealt, nextCard) || !CardSet.contains(returned, nextCard)){
+				System.out.println("ERROR: CARD " + nextCard + " DEALT OUT OF ORDER");
+				errorFound = true;
+			}
+			dealt = CardSet.add(dealt, nextCard);
+		}
+		if (testDeck.dealNext() != null || dealt != CardSet.FULL_PACK || testDeck.getDealtCards() != CardSet.FULL_PACK){
+			System.out.println("ERROR: DECK DEALING CARDS WHEN NONE ARE LEFT, SHOULD DEAL NULL");
+			errorFound = true;
+		}
+
+		// Returning a card twice should only put it back once
+		testDeck.returnCard(PlayingCard.fromOrdinal(0));
+		testDeck.returnCard(PlayingCard.fromOrdinal(0));
+		if (testDeck.dealNext() != PlayingCard.fromOrdinal(0) || testDeck.dealNext() != null){
+			System.out.println("ERROR: CARD RETURNED TWICE DEALT TWICE");
+			errorFound = true;
+		}
+
+		// A block should deal the next cards in one go, or nothing if too few are left
+		testDeck.shuffle();
+		testDeck.reset();
+		PlayingCard[] block = new PlayingCard[52];
+		if (!testDeck.deal(50, block) || testDeck.deal(3, block) || testDeck.dealRound(1) != null
+				|| !testDeck.deal(2, block) || testDeck.getDealtCards() != CardSet.FULL_PACK){
+			System.out.println("ERROR: DEALING A BLOCK WHEN NOT ENOUGH CARDS LEFT");
+			errorFound = true;
+		}
+
+		// Threads dealing and returning at once should never lose or repeat a card
+		int threads = 8;
+		testDeck.shuffle();
+		testDeck.reset();
+		churn(testDeck, threads, 100000);
+		long remaining = CardSet.EMPTY;
+		for (PlayingCard nextCard = testDeck.dealNext(); nextCard != null; nextCard = testDeck.dealNext()){
+			if (CardSet.contains(remaining, nextCard)){
+				System.out.println("ERROR: CARD " + nextCard + " DEALT TWICE AFTER THREADED DEALING");
+				errorFound = true;
+			}
+			remaining = CardSet.add(remaining, nextCard);
+		}
+		if (remaining != CardSet.FULL_PACK){
+			System.out.println("ERROR: CARDS LOST AFTER THREADED DEALING " + CardSet.toString(CardSet.FULL_PACK & ~remaining));
+			errorFound = true;
+		}
+
+		// Time the same work on both decks, a few rounds to let the JIT compiler warm up
+		for (int round=0; round<3; round++){
+			DeckOfCards lockedDeck = new DeckOfCards();
+			long start = System.nanoTime();
+			churn(lockedDeck, threads, 200000);
+			long lockedTime = System.nanoTime() - start;
+			LockFreeDeckOfCards lockFreeDeck = new LockFreeDeckOfCards();
+			start = System.nanoTime();
+			churn(lockFreeDeck, threads, 200000);
+			long lockFreeTime = System.nanoTime() - start;
+			System.out.println(threads + " threads x 200000 deals and returns: semaphore " + lockedTime/1000000
+					+ "ms, lock free " + lockFreeTime/1000000 + "ms");
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+	/**
+	 * Starts threads that each deal a card and return it the given number of times,
+	 * and waits for them all to finish
+	 */
+	private static void churn(Deck deck, int threads, int dealsPerThread) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] dealers = new Thread[threads];
+		for (int t=0; t<threads; t++){
+			dealers[t] = new Thread(() -> {
+				try {
+					start.await();
+					for (int i=0; i<dealsPerThread; i++){
+						deck.returnCard(deck.dealNext());
+					}
+				}
+				catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			});
+			dealers[t].start();
+		}
+		start.countDown();
+		for (Thread dealer : dealers){
+			dealer.join();
+		}
+	}
+
+}
@@ -22,35 +22,103 @@ public class PlayingCard {
 	 */
 	static public final int UNIQUE_CARD_COUNT = 52;
 	
+	/*
+	 * The 52 shared card instances of a standard pack, indexed by ordinal
+	 * Cards are immutable so every deck and hand can use these instead of making its own
+	 */
+	private static final PlayingCard[] CANONICAL_CARDS = new PlayingCard[UNIQUE_CARD_COUNT];
+	
+	static {
+		for (int i=0; i<UNIQUE_CARD_COUNT; i++){
+			CANONICAL_CARDS[i] = new PlayingCard(CARD_TYPES[i%13], SUITS[(i/13)%4], FACE_VALUES[i%13], GAME_VALUES[i%13]);
+		}
+	}
+	
 	//Private internal fields
-	private String type;
-	private char suit;
-	private int faceValue, gameValue;
+	private final String type;
+	private final char suit;
+	private final int faceValue, gameValue;
+	private final int ordinal;
 	
 	/*
 	 * Constructor as per specification, sets all internal fields and returns one playing cards
-	 * See constant arrays above for default values for each parameter in order
-	 * See simplified constructor directly below for easy initialization of a standard pack of cards
+	 * See constant arrays above for the values each parameter may take, in order. Only the
+	 * 52 standard cards can be made, so every card has an ordinal from 0 to 51
+	 * See of(faceValue, suit) below for the shared instance of a standard card
+	 * @throws IllegalArgumentException if the type, suit or values are not a standard card
 	 */
 	public PlayingCard (String cardType, char suit, int faceValue, int gameValue){
 		this.type = cardType;
 		this.suit = suit;
 		this.faceValue = faceValue;
 		this.gameValue = gameValue;
+		this.ordinal = ordinalOf(cardType, suit, faceValue, gameValue);
+	}
+	
+	/**
+	 * Works out the position of a card in a full pack from its type and suit, checking its
+	 * values are the ones that type has in the constant arrays above
+	 */
+	private static int ordinalOf(String cardType, char suit, int faceValue, int gameValue){
+		int typeIndex = -1, suitIndex = -1;
+		for (int i=0; i<CARD_TYPES.length; i++){
+			if (CARD_TYPES[i].equals(cardType)){
+				typeIndex = i;
+			}
+		}
+		for (int i=0; i<SUITS.length; i++){
+			if (SUITS[i] == suit){
+				suitIndex = i;
+			}
+		}
+		if (typeIndex < 0 || suitIndex < 0 || FACE_VALUES[typeIndex] != faceValue || GAME_VALUES[typeIndex] != gameValue){
+			throw new IllegalArgumentException("Not a standard card: " + cardType + suit + " with face value "
+					+ faceValue + " and game value " + gameValue);
+		}
+		return suitIndex*13 + typeIndex;
+	}
+	
+	/**
+	 * Returns the shared instance of a standard card
+	 * @param faceValue 1 for an ace up to 13 for a king, as in FACE_VALUES
+	 * @param suit One of the suit constants above
+	 */
+	public static PlayingCard of(int faceValue, char suit){
+		if (faceValue < 1 || faceValue > CARD_TYPES.length){
+			throw new IllegalArgumentException("Invalid face value: " + faceValue);
+		}
+		for (int i=0; i<SUITS.length; i++){
+			if (SUITS[i] == suit){
+				return CANONICAL_CARDS[i*13 + faceValue-1];
+			}
+		}
+		throw new IllegalArgumentException("Invalid suit: " + suit);
+	}
+	
+	/**
+	 * Returns the shared instance of the card at the given position in a full pack
+	 * @see #ordinal()
+	 */
+	public static PlayingCard fromOrdinal(int ordinal){
+		return CANONICAL_CARDS[ordinal];
 	}
 	
 	/**
 	 * Simplified constructor for making the initialization of a whole pack containing each
 	 * card once sorted by suit then face value
+	 * The array is new but the cards in it are the shared instances
 	 * @return An array of 52 PlayingCard objects
 	 */
 	public static PlayingCard[] newFullPack(){
-		
-		PlayingCard[] newPack = new PlayingCard[52];
-		for (int i=0; i<UNIQUE_CARD_COUNT; i++){
-			newPack[i] = new PlayingCard(CARD_TYPES[i%13], SUITS[(i/13)%4], FACE_VALUES[i%13], GAME_VALUES[i%13]);
-		}
-		return newPack;
+		return CANONICAL_CARDS.clone();
+	}
+	
+	/**
+	 * Returns the position of this card in a full pack sorted by suit then face value, 0 to 51
+	 * ie. suit index in SUITS * 13 + type index in CARD_TYPES. Useful for indexing arrays by card
+	 */
+	public int ordinal(){
+		return ordinal;
 	}
 	
 	// Accessor method for suit variable
@@ -76,6 +144,26 @@ public class PlayingCard {
 		return type + suit;
 	}
 	
+	/*
+	 * Cards are equal if they are the same card, regardless of which pack they came from
+	 */
+	public boolean equals(Object other){
+		if (this == other){
+			return true;
+		}
+		if (!(other instanceof PlayingCard)){
+			return false;
+		}
+		PlayingCard card = (PlayingCard) other;
+		return suit == card.suit && faceValue == card.faceValue && gameValue == card.gameValue 
+				&& type.equals(card.type);
+	}
+	
+	// Cards hash to their ordinal
+	public int hashCode(){
+		return ordinal;
+	}
+	
 	/*
 	 * Main method which tests the class, it uses the simplified constructor and a loop
 	 * to instantiate one of each card in a pack and then another for loop to iterate through
@@ -91,6 +179,46 @@ public class PlayingCard {
 		for (PlayingCard i: testDeck){
 			System.out.println(i.toString());
 		}
+		
+		// Check each card is the shared instance for its ordinal and equal to a newly made copy
+		boolean errorFound = false;
+		for (int i=0; i<testDeck.length; i++){
+			PlayingCard copy = new PlayingCard(CARD_TYPES[i%13], SUITS[i/13], FACE_VALUES[i%13], GAME_VALUES[i%13]);
+			if (testDeck[i].ordinal() != i || testDeck[i] != of(FACE_VALUES[i%13], SUITS[i/13]) 
+					|| testDeck[i] != fromOrdinal(i) || !testDeck[i].equals(copy) 
+					|| testDeck[i].hashCode() != copy.hashCode()){
+				System.out.println("ERROR: CARD " + testDeck[i] + " NOT CANONICAL");
+				errorFound = true;
+			}
+		}
+		if (testDeck[0].equals(testDeck[1]) || newFullPack()[5] != testDeck[5]){
+			System.out.println("ERROR: CARD EQUALITY");
+			errorFound = true;
+		}
+		
+		// Cards that are not in a standard pack should not be made
+		String[] badTypes = {"1", "A", "A", "A"};
+		char[] badSuits = {HEARTS, 'X', HEARTS, HEARTS};
+		int[] badFaceValues = {1, 1, 2, 1};
+		int[] badGameValues = {14, 14, 14, 1};
+		for (int i=0; i<badTypes.length; i++){
+			try {
+				PlayingCard bad = new PlayingCard(badTypes[i], badSuits[i], badFaceValues[i], badGameValues[i]);
+				System.out.println("ERROR: NON STANDARD CARD " + bad + " MADE");
+				errorFound = true;
+			}
+			catch (IllegalArgumentException e){
+				// Expected
+			}
+		}
+		
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
 
 	}
 
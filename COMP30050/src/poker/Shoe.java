@@ -0,0 +1,292 @@
+package poker;
+
+/**
+ * A dealing shoe holding several packs of cards shuffled together, for tables that play
+ * through more cards than one pack and need discards to come back into play.
+ *
+ * The shoe is one array used as a ring, in three runs one after another: the live stack
+ * dealt from at the top, then the discard pile of returned cards, then a run of slots for
+ * the cards out in players' hands. A returned card is written into the first of those slots,
+ * which becomes the new bottom of the discard pile, so returning is O(1).
+ *
+ * Once the live stack is down to the cut card only the discard pile is shuffled, in place,
+ * and the discards join the bottom of the live stack. The live cards are never moved, so a
+ * reshuffle costs only as much as the discard pile and the table never waits for the whole
+ * shoe to be rebuilt. Only reset() builds the shoe again from full packs.
+ *
+ * A shoe holds several copies of each card, so getDealtCards() gives the set of cards with at
+ * least one copy out. Calls are synchronized and never block for long, so unlike DeckOfCards
+ * they do not throw InterruptedException.
+ */
+public class Shoe implements Deck {
+
+	private final int packs;
+	private final int cutCard;
+	private final ShuffleStrategy shuffler;
+
+	/*
+	 * The ring of cards. The live stack runs from top for liveCards cards, followed by
+	 * discardCards returned cards, then slots for the cards out of the shoe
+	 */
+	private final PlayingCard[] cards;
+	private int top;
+	private int liveCards;
+	private int discardCards;
+
+	// Number of copies of each card out of the shoe, indexed by ordinal
+	private final int[] cardsOut = new int[PlayingCard.UNIQUE_CARD_COUNT];
+
+	// Number of times the discard pile has been shuffled back into the live stack
+	private long reshuffles;
+
+	/*
+	 * Constructor builds a shoe of the given number of packs with the cut card a quarter of
+	 * the way from the bottom
+	 */
+	public Shoe(int packs){
+		this(packs, packs * PlayingCard.UNIQUE_CARD_COUNT / 4, new FisherYatesShuffle());
+	}
+
+	/*
+	 * Constructor takes the number of packs, the number of live cards left when the discards
+	 * are shuffled back in, and the shuffle to use
+	 */
+	public Shoe(int packs, int cutCard, ShuffleStrategy shuffler){
+		if (packs < 1 || cutCard < 0 || cutCard >= packs * PlayingCard.UNIQUE_CARD_COUNT){
+			throw new IllegalArgumentException("Need at least one pack and a cut card inside the shoe");
+		}
+		this.packs = packs;
+		this.cutCard = cutCard;
+		this.shuffler = shuffler;
+		cards = new PlayingCard[packs * PlayingCard.UNIQUE_CARD_COUNT];
+		reset();
+	}
+
+	/**
+	 * Returns the next card from the top of the live stack, first shuffling the discards back
+	 * in if the cut card has been reached. Returns null only if every card is out of the shoe
+	 */
+	@Override
+	public synchronized PlayingCard dealNext(){
+		if (liveCards <= cutCard){
+			reshuffleDiscards();
+		}
+		if (liveCards == 0){
+			return null;
+		}
+		PlayingCard card = cards[top];
+		top = nextIndex(top);
+		liveCards--;
+		cardsOut[card.ordinal()]++;
+		return card;
+	}
+
+	/**
+	 * Deals count cards from the top of the live stack into the start of the given array
+	 * Returns false and deals nothing if fewer than count cards are left in the shoe
+	 */
+	@Override
+	public synchronized boolean deal(int count, PlayingCard[] into){
+		if (liveCards <= cutCard || liveCards < count){
+			reshuffleDiscards();
+		}
+		if (liveCards < count){
+			return false;
+		}
+		for (int i=0; i<count; i++){
+			into[i] = cards[top];
+			cardsOut[into[i].ordinal()]++;
+			top = nextIndex(top);
+		}
+		liveCards -= count;
+		return true;
+	}
+
+	/**
+	 * Puts a card on the discard pile
+	 * Cards with no copy out of this shoe are ignored
+	 */
+	@Override
+	public synchronized void returnCard(PlayingCard discarded){
+		if (discarded == null || cardsOut[discarded.ordinal()] == 0){
+			return;
+		}
+		cardsOut[discarded.ordinal()]--;
+		cards[(top + liveCards + discardCards) % cards.length] = discarded;
+		discardCards++;
+	}
+
+	/**
+	 * Shuffles the discard pile into the live stack and then shuffles all the cards left in the shoe
+	 * Cards out of the shoe stay out
+	 */
+	@Override
+	public synchronized void shuffle(){
+		liveCards += discardCards;
+		discardCards = 0;
+		shuffler.shuffleRing(cards, top, liveCards);
+	}
+
+	/**
+	 * Builds the shoe again from full packs and shuffles it, for the start of a new shoe
+	 * Cards still out of the shoe are forgotten
+	 */
+	@Override
+	public synchronized void reset(){
+		for (int pack=0; pack<packs; pack++){
+			System.arraycopy(PlayingCard.newFullPack(), 0, cards, pack * PlayingCard.UNIQUE_CARD_COUNT,
+					PlayingCard.UNIQUE_CARD_COUNT);
+		}
+		shuffler.shuffle(cards);
+		top = 0;
+		liveCards = cards.length;
+		discardCards = 0;
+		for (int i=0; i<cardsOut.length; i++){
+			cardsOut[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns the CardSet of cards with at least one copy out of the shoe
+	 */
+	@Override
+	public synchronized long getDealtCards(){
+		long dealt = CardSet.EMPTY;
+		for (int ordinal=0; ordinal<cardsOut.length; ordinal++){
+			if (cardsOut[ordinal] > 0){
+				dealt = CardSet.add(dealt, ordinal);
+			}
+		}
+		return dealt;
+	}
+
+	/**
+	 * Returns the number of cards left in the shoe, in the live stack and on the discard pile
+	 */
+	public synchronized int cardsLeft(){
+		return liveCards + discardCards;
+	}
+
+	// Accessor for the number of times the discards have been shuffled back in
+	public synchronized long getReshuffles(){
+		return reshuffles;
+	}
+
+	/**
+	 * Shuffles the discard pile in place and moves it into the bottom of the live stack
+	 */
+	private void reshuffleDiscards(){
+		if (discardCards == 0){
+			return;
+		}
+		shuffler.shuffleRing(cards, (top + liveCards) % cards.length, discardCards);
+		liveCards += discardCards;
+		discardCards = 0;
+		reshuffles++;
+	}
+
+	// Returns the index after the given one in the ring
+	private int nextIndex(int index){
+		index++;
+		return index == cards.length ? 0 : index;
+	}
+
+	// Counts the copies of a card in the live stack and discard pile
+	private int copiesInShoe(int ordinal){
+		int copies = 0;
+		for (int i=0; i<liveCards + discardCards; i++){
+			if (cards[(top + i) % cards.length].ordinal() == ordinal){
+				copies++;
+			}
+		}
+		return copies;
+	}
+
+	/*
+	 * Main method plays many rounds of draw poker from a six pack shoe, checking no card is
+	 * ever made or lost and the discards keep coming back, then checks a shoe with no cards
+	 * returned runs out
+	 */
+	public static void main(String[] args) {
+
+		boolean errorFound = false;
+		Shoe shoe = new Shoe(6, 60, FisherYatesShuffle.seeded(30050));
+		int players = 8;
+		PlayingCard[] block = new PlayingCard[players * HandOfCards.CARDS_HELD];
+
+		long start = System.nanoTime();
+		int rounds = 100000;
+		for (int round=0; round<rounds && !errorFound; round++){
+			if (!shoe.deal(block.length, block)){
+				System.out.println("ERROR: SHOE RAN OUT WITH CARDS BEING RETURNED");
+				errorFound = true;
+				break;
+			}
+			// Each player draws three cards, then all the cards go back on the discard pile
+			for (int i=0; i<block.length; i+=HandOfCards.CARDS_HELD){
+				for (int draw=0; draw<3; draw++){
+					shoe.returnCard(block[i + draw]);
+					block[i + draw] = shoe.dealNext();
+				}
+			}
+			for (int i=0; i<block.length; i++){
+				shoe.returnCard(block[i]);
+			}
+			if (shoe.cardsLeft() != 6 * PlayingCard.UNIQUE_CARD_COUNT){
+				System.out.println("ERROR: SHOE HAS " + shoe.cardsLeft() + " CARDS AFTER ROUND " + round);
+				errorFound = true;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(rounds + " rounds for " + players + " players in " + elapsed/1000000 + "ms with "
+				+ shoe.getReshuffles() + " reshuffles of the discards");
+
+		// Every card should still be in the shoe six times
+		for (int ordinal=0; ordinal<PlayingCard.UNIQUE_CARD_COUNT; ordinal++){
+			if (shoe.copiesInShoe(ordinal) != 6){
+				System.out.println("ERROR: SHOE HOLDS " + shoe.copiesInShoe(ordinal) + " OF " + PlayingCard.fromOrdinal(ordinal));
+				errorFound = true;
+			}
+		}
+		if (shoe.getReshuffles() == 0){
+			System.out.println("ERROR: DISCARDS NEVER SHUFFLED BACK IN");
+			errorFound = true;
+		}
+
+		// Returning a card with no copy out should be ignored
+		Shoe singlePack = new Shoe(1);
+		PlayingCard first = singlePack.dealNext();
+		singlePack.returnCard(first);
+		singlePack.returnCard(first);
+		if (singlePack.cardsLeft() != PlayingCard.UNIQUE_CARD_COUNT){
+			System.out.println("ERROR: CARD RETURNED TWICE TO SHOE");
+			errorFound = true;
+		}
+
+		// With nothing returned a shoe should deal every card once and then null
+		Shoe twoPacks = new Shoe(2);
+		int[] dealtCopies = new int[PlayingCard.UNIQUE_CARD_COUNT];
+		for (int i=0; i<2 * PlayingCard.UNIQUE_CARD_COUNT; i++){
+			dealtCopies[twoPacks.dealNext().ordinal()]++;
+		}
+		for (int ordinal=0; ordinal<dealtCopies.length; ordinal++){
+			if (dealtCopies[ordinal] != 2){
+				System.out.println("ERROR: TWO PACK SHOE DEALT " + dealtCopies[ordinal] + " OF " + PlayingCard.fromOrdinal(ordinal));
+				errorFound = true;
+			}
+		}
+		if (twoPacks.dealNext() != null || twoPacks.getDealtCards() != CardSet.FULL_PACK){
+			System.out.println("ERROR: SHOE DEALING CARDS WHEN NONE ARE LEFT, SHOULD DEAL NULL");
+			errorFound = true;
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
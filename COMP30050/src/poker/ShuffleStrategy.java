@@ -0,0 +1,41 @@
+package poker;
+
+/**
+ * A way of putting cards into random order, so decks can be given a different
+ * shuffle or a seeded one for reproducible games.
+ */
+public interface ShuffleStrategy {
+
+	/**
+	 * Shuffles the cards at positions from up to but not including to, leaving the rest in place
+	 */
+	void shuffle(PlayingCard[] cards, int from, int to);
+
+	/**
+	 * Shuffles the whole array
+	 */
+	default void shuffle(PlayingCard[] cards){
+		shuffle(cards, 0, cards.length);
+	}
+
+	/**
+	 * Shuffles count cards starting at position start and wrapping round to the front of the
+	 * array, as used by decks kept in a ring. By default a run that wraps is copied out to be
+	 * shuffled, strategies that can should shuffle it in place
+	 */
+	default void shuffleRing(PlayingCard[] cards, int start, int count){
+		if (start + count <= cards.length){
+			shuffle(cards, start, start + count);
+			return;
+		}
+		PlayingCard[] run = new PlayingCard[count];
+		for (int i=0; i<count; i++){
+			run[i] = cards[(start + i) % cards.length];
+		}
+		shuffle(run);
+		for (int i=0; i<count; i++){
+			cards[(start + i) % cards.length] = run[i];
+		}
+	}
+
+}
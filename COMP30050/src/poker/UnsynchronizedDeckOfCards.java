@@ -0,0 +1,119 @@
+package poker;
+
+/**
+ * Deck of cards for use by a single thread, such as a table that stays on one shard of a
+ * ShardedScheduler. Deals and returns cards exactly as DeckOfCards does but never takes the
+ * dealer Semaphore, so a deal costs no atomic operations.
+ *
+ * Nothing stops two threads using the deck at once, which would deal the same card twice.
+ * A deck may still be handed from one thread to another, as long as the hand over itself
+ * is safely published, eg. through a Thread start or join.
+ */
+public class UnsynchronizedDeckOfCards extends DeckOfCards {
+
+	/*
+	 * Constructor shuffles a new deck with a Fisher-Yates shuffle
+	 */
+	public UnsynchronizedDeckOfCards(){
+		super();
+	}
+
+	/*
+	 * Constructor takes the shuffle to use, eg. a seeded one for reproducible games
+	 */
+	public UnsynchronizedDeckOfCards(ShuffleStrategy shuffler){
+		super(shuffler);
+	}
+
+	/**
+	 * Does nothing, the deck is only used by one thread
+	 */
+	@Override
+	protected void acquireDealer(){
+	}
+
+	/**
+	 * Does nothing, the deck is only used by one thread
+	 */
+	@Override
+	protected void releaseDealer(){
+	}
+
+	/*
+	 * Main method checks the deck deals and takes back the same cards in the same order as
+	 * a DeckOfCards with the same seed, then times dealing from each
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		DeckOfCards lockedDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		DeckOfCards deck = new UnsynchronizedDeckOfCards(FisherYatesShuffle.seeded(30050));
+
+		// Deal hands, draw three cards each and check both decks give the same cards
+		PlayingCard[] lockedHand = new PlayingCard[HandOfCards.CARDS_HELD];
+		PlayingCard[] hand = new PlayingCard[HandOfCards.CARDS_HELD];
+		for (int round=0; round<10000 && !errorFound; round++){
+			lockedDeck.shuffle();
+			lockedDeck.reset();
+			deck.shuffle();
+			deck.reset();
+			for (int player=0; player<6; player++){
+				lockedDeck.deal(hand.length, lockedHand);
+				deck.deal(hand.length, hand);
+				for (int i=0; i<3; i++){
+					lockedDeck.returnCard(lockedHand[i]);
+					lockedHand[i] = lockedDeck.dealNext();
+					deck.returnCard(hand[i]);
+					hand[i] = deck.dealNext();
+				}
+				for (int i=0; i<hand.length; i++){
+					if (hand[i] != lockedHand[i]){
+						System.out.println("ERROR: DEALT " + hand[i] + ", EXPECTED " + lockedHand[i] + " IN ROUND " + round);
+						errorFound = true;
+					}
+				}
+			}
+			if (deck.getDealtCards() != lockedDeck.getDealtCards()){
+				System.out.println("ERROR: DEALT CARDS DIFFER IN ROUND " + round);
+				errorFound = true;
+			}
+		}
+
+		// A deck with every card dealt should deal null
+		deck.reset();
+		for (int i=0; i<PlayingCard.UNIQUE_CARD_COUNT; i++){
+			deck.dealNext();
+		}
+		if (deck.dealNext() != null || deck.getDealtCards() != CardSet.FULL_PACK){
+			System.out.println("ERROR: DECK DEALING CARDS WHEN NONE ARE LEFT, SHOULD DEAL NULL");
+			errorFound = true;
+		}
+
+		// Time dealing and returning a card, best of several runs
+		int deals = 5000000;
+		long lockedBest = Long.MAX_VALUE, unsynchronizedBest = Long.MAX_VALUE;
+		for (int run=0; run<5; run++){
+			long start = System.nanoTime();
+			for (int i=0; i<deals; i++){
+				lockedDeck.returnCard(lockedDeck.dealNext());
+			}
+			lockedBest = Math.min(lockedBest, System.nanoTime() - start);
+			start = System.nanoTime();
+			for (int i=0; i<deals; i++){
+				deck.returnCard(deck.dealNext());
+			}
+			unsynchronizedBest = Math.min(unsynchronizedBest, System.nanoTime() - start);
+		}
+		System.out.println(deals + " deals and returns: semaphore " + lockedBest/1000000 + "ms, unsynchronized "
+				+ unsynchronizedBest/1000000 + "ms");
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
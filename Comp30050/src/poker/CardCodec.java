@@ -0,0 +1,424 @@
+package poker;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Binary encoding of cards, hands and deck state, read and written straight from and to
+ * ByteBuffers so the same form serves network messages, logs and saved games.
+ *
+ * 	- A card is one byte holding its ordinal, see PlayingCard.ordinal()
+ * 	- A hand is packed into a long, six bits per card ordinal with the first card in the
+ * 	  lowest bits and the number of cards in the top four bits, so up to ten cards fit.
+ * 	  The low 30 bits of a five card hand are the same as HandEvaluator.pack(). A hand is
+ * 	  written as the eight bytes of the long in the buffer's byte order
+ * 	- A deck is the six bit ordinals of its 52 cards in deck order packed into 39 bytes,
+ * 	  then a byte for the top of the deck and a byte for the number of cards dealt. The set
+ * 	  of dealt cards is not written, as they are always the cards just before the top
+ *
+ * Cards decode to the shared instances from PlayingCard.fromOrdinal(), hands decode into
+ * longs or into an existing HandOfCards and decks into an existing DeckOfCards.Snapshot,
+ * so nothing is allocated. Input that does not decode to real cards throws an
+ * IllegalArgumentException before the hand or snapshot decoded into is changed.
+ */
+public final class CardCodec {
+
+	/**
+	 * Bytes written for a card, a hand and a deck
+	 */
+	public static final int CARD_BYTES = 1;
+	public static final int HAND_BYTES = Long.BYTES;
+	public static final int DECK_BYTES = (PlayingCard.UNIQUE_CARD_COUNT * 6 + 7) / 8 + 2;
+
+	/**
+	 * Most cards a packed hand can hold
+	 */
+	public static final int MAX_HAND_CARDS = 10;
+
+	// Layout of a packed hand, also built directly by CardParser
+	static final int ORDINAL_BITS = 6;
+	static final int ORDINAL_MASK = (1 << ORDINAL_BITS) - 1;
+	static final int COUNT_SHIFT = 60;
+
+	// No instances, all methods are static
+	private CardCodec(){
+	}
+
+	/**
+	 * Writes a card at the buffer's position
+	 */
+	public static void putCard(ByteBuffer buffer, PlayingCard card){
+		buffer.put((byte) checkOrdinal(card.ordinal()));
+	}
+
+	/**
+	 * Writes a card at the given index, leaving the buffer's position alone
+	 */
+	public static void putCard(ByteBuffer buffer, int index, PlayingCard card){
+		buffer.put(index, (byte) checkOrdinal(card.ordinal()));
+	}
+
+	/**
+	 * Reads a card from the buffer's position
+	 */
+	public static PlayingCard getCard(ByteBuffer buffer){
+		return PlayingCard.fromOrdinal(checkOrdinal(buffer.get()));
+	}
+
+	/**
+	 * Reads a card from the given index, leaving the buffer's position alone
+	 */
+	public static PlayingCard getCard(ByteBuffer buffer, int index){
+		return PlayingCard.fromOrdinal(checkOrdinal(buffer.get(index)));
+	}
+
+	/**
+	 * Packs the first count cards of an array into a long
+	 */
+	public static long packHand(PlayingCard[] cards, int count){
+		if (count < 0 || count > MAX_HAND_CARDS){
+			throw new IllegalArgumentException("A packed hand holds up to " + MAX_HAND_CARDS + " cards, got " + count);
+		}
+		long packed = (long) count << COUNT_SHIFT;
+		for (int i=0; i<count; i++){
+			packed |= (long) checkOrdinal(cards[i].ordinal()) << (ORDINAL_BITS * i);
+		}
+		return packed;
+	}
+
+	/**
+	 * Packs the five cards of a hand into a long, in the hand's order
+	 */
+	public static long packHand(HandOfCards hand){
+		return ((long) HandOfCards.CARDS_HELD << COUNT_SHIFT) | hand.snapshot();
+	}
+
+	/**
+	 * Puts the five cards of a packed hand into an existing hand, which is sorted and
+	 * classified again. The hand's deck is not changed, and neither is the hand if the
+	 * packed hand is not five different real cards
+	 */
+	public static void unpackHand(long packed, HandOfCards into){
+		checkHand(packed);
+		if (handSize(packed) != HandOfCards.CARDS_HELD){
+			throw new IllegalArgumentException("Need a packed hand of " + HandOfCards.CARDS_HELD + " cards, got "
+					+ handSize(packed));
+		}
+		into.restore((int) (packed & ((1L << (ORDINAL_BITS * HandOfCards.CARDS_HELD)) - 1)));
+	}
+
+	// Returns the number of cards in a packed hand
+	public static int handSize(long packed){
+		return (int) (packed >>> COUNT_SHIFT);
+	}
+
+	// Returns the ordinal of the card at a position in a packed hand
+	public static int handOrdinal(long packed, int position){
+		return (int) (packed >>> (ORDINAL_BITS * position)) & ORDINAL_MASK;
+	}
+
+	// Returns the card at a position in a packed hand
+	public static PlayingCard handCard(long packed, int position){
+		return PlayingCard.fromOrdinal(handOrdinal(packed, position));
+	}
+
+	/**
+	 * Returns the CardSet of the cards in a packed hand
+	 */
+	public static long handCardSet(long packed){
+		long cards = CardSet.EMPTY;
+		for (int i=0; i<handSize(packed); i++){
+			cards = CardSet.add(cards, handOrdinal(packed, i));
+		}
+		return cards;
+	}
+
+	/**
+	 * Writes a packed hand at the buffer's position
+	 */
+	public static void putHand(ByteBuffer buffer, long packed){
+		buffer.putLong(packed);
+	}
+
+	/**
+	 * Reads a packed hand from the buffer's position, checking it holds different real cards
+	 */
+	public static long getHand(ByteBuffer buffer){
+		return checkHand(buffer.getLong());
+	}
+
+	// Returns the packed hand if it holds different real cards and nothing past them, otherwise throws
+	private static long checkHand(long packed){
+		int size = handSize(packed);
+		long cardBits = packed & ((1L << COUNT_SHIFT) - 1);
+		if (size > MAX_HAND_CARDS || (cardBits >>> (ORDINAL_BITS * size)) != 0){
+			throw new IllegalArgumentException("Not a packed hand: " + Long.toHexString(packed));
+		}
+		for (int i=0; i<size; i++){
+			checkOrdinal(handOrdinal(packed, i));
+		}
+		if (CardSet.size(handCardSet(packed)) != size){
+			throw new IllegalArgumentException("Packed hand holds a card twice: " + Long.toHexString(packed));
+		}
+		return packed;
+	}
+
+	/**
+	 * Writes the deck state held in a snapshot at the buffer's position, see
+	 * DeckOfCards.snapshot(Snapshot) to take one without allocating
+	 */
+	public static void putDeck(ByteBuffer buffer, DeckOfCards.Snapshot deck){
+		long bits = 0;
+		int bitCount = 0;
+		for (int i=0; i<deck.order.length; i++){
+			bits |= (long) deck.order[i] << bitCount;
+			bitCount += ORDINAL_BITS;
+			while (bitCount >= Byte.SIZE){
+				buffer.put((byte) bits);
+				bits >>>= Byte.SIZE;
+				bitCount -= Byte.SIZE;
+			}
+		}
+		if (bitCount > 0){
+			buffer.put((byte) bits);
+		}
+		buffer.put((byte) deck.top);
+		buffer.put((byte) deck.cardsDealt);
+	}
+
+	/**
+	 * Reads deck state from the buffer's position into the given snapshot and returns it,
+	 * ready for DeckOfCards.restore(). The snapshot is only changed if the state is a whole
+	 * pack, so on an exception the buffer's position has moved but the snapshot has not
+	 */
+	public static DeckOfCards.Snapshot getDeck(ByteBuffer buffer, DeckOfCards.Snapshot into){
+		int start = buffer.position();
+		long seen = CardSet.EMPTY;
+		long bits = 0;
+		int bitCount = 0;
+		for (int i=0; i<PlayingCard.UNIQUE_CARD_COUNT; i++){
+			if (bitCount < ORDINAL_BITS){
+				bits |= (buffer.get() & 0xFFL) << bitCount;
+				bitCount += Byte.SIZE;
+			}
+			int ordinal = checkOrdinal((int) bits & ORDINAL_MASK);
+			seen = CardSet.add(seen, ordinal);
+			bits >>>= ORDINAL_BITS;
+			bitCount -= ORDINAL_BITS;
+		}
+		int top = buffer.get() & 0xFF;
+		int cardsDealt = buffer.get() & 0xFF;
+		if (seen != CardSet.FULL_PACK || top >= PlayingCard.UNIQUE_CARD_COUNT || cardsDealt > PlayingCard.UNIQUE_CARD_COUNT){
+			throw new IllegalArgumentException("Not a whole deck at position " + start);
+		}
+
+		// Read the ordinals again now they are known to be a whole pack
+		bits = 0;
+		bitCount = 0;
+		for (int i=0; i<PlayingCard.UNIQUE_CARD_COUNT; i++){
+			if (bitCount < ORDINAL_BITS){
+				bits |= (buffer.get(start++) & 0xFFL) << bitCount;
+				bitCount += Byte.SIZE;
+			}
+			into.order[i] = (byte) (bits & ORDINAL_MASK);
+			bits >>>= ORDINAL_BITS;
+			bitCount -= ORDINAL_BITS;
+		}
+		into.top = top;
+		into.cardsDealt = cardsDealt;
+
+		// The dealt cards are the ones just before the top, see DeckOfCards
+		long dealtCards = CardSet.EMPTY;
+		for (int i=1; i<=cardsDealt; i++){
+			dealtCards = CardSet.add(dealtCards, into.order[(top - i + PlayingCard.UNIQUE_CARD_COUNT) % PlayingCard.UNIQUE_CARD_COUNT]);
+		}
+		into.dealtCards = dealtCards;
+		return into;
+	}
+
+	// Returns the ordinal if it is a card in a pack, otherwise throws
+	private static int checkOrdinal(int ordinal){
+		if (ordinal < 0 || ordinal >= PlayingCard.UNIQUE_CARD_COUNT){
+			throw new IllegalArgumentException("Not a card ordinal: " + ordinal);
+		}
+		return ordinal;
+	}
+
+	/*
+	 * Main method round trips cards, hands and decks part way through a game through a
+	 * buffer, checks bad input is turned away, and times encoding and decoding hands
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+		// Every card should come back as the same shared instance
+		for (int ordinal=0; ordinal<PlayingCard.UNIQUE_CARD_COUNT; ordinal++){
+			putCard(buffer, PlayingCard.fromOrdinal(ordinal));
+		}
+		buffer.flip();
+		for (int ordinal=0; ordinal<PlayingCard.UNIQUE_CARD_COUNT; ordinal++){
+			PlayingCard card = getCard(buffer);
+			if (card != PlayingCard.fromOrdinal(ordinal)){
+				System.out.println("ERROR: CARD " + ordinal + " DECODED AS " + card);
+				errorFound = true;
+			}
+		}
+
+		// Hands packed from a HandOfCards should match HandEvaluator.pack and restore the same hand
+		DeckOfCards deck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		HandOfCards hand = new HandOfCards(deck);
+		HandOfCards decoded = new HandOfCards(new DeckOfCards());
+		PlayingCard[] cards = new PlayingCard[HandOfCards.CARDS_HELD];
+		for (int round=0; round<10000 && !errorFound; round++){
+			deck.shuffle();
+			deck.reset();
+			hand = new HandOfCards(deck);
+			for (int i=0; i<cards.length; i++){
+				cards[i] = hand.getCard(i);
+			}
+			buffer.clear();
+			putHand(buffer, packHand(hand));
+			putHand(buffer, packHand(cards, cards.length));
+			buffer.flip();
+			long packed = getHand(buffer);
+			unpackHand(packed, decoded);
+			if (packed != getHand(buffer) || (int) (packed & 0x3FFFFFFF) != HandEvaluator.pack(cards)
+					|| !decoded.toString().equals(hand.toString()) || decoded.getGameValue() != hand.getGameValue()
+					|| handCardSet(packed) != hand.getCardSet() || buffer.position() != 2 * HAND_BYTES){
+				System.out.println("ERROR: " + hand + "DECODED AS " + decoded);
+				errorFound = true;
+			}
+		}
+
+		// A deck part way through a game should deal the same cards after decoding
+		deck.shuffle();
+		deck.reset();
+		for (int i=0; i<20; i++){
+			PlayingCard card = deck.dealNext();
+			if (i % 3 == 0){
+				deck.returnCard(card);
+			}
+		}
+		buffer.clear();
+		putDeck(buffer, deck.snapshot());
+		if (buffer.position() != DECK_BYTES){
+			System.out.println("ERROR: DECK WRITTEN IN " + buffer.position() + " BYTES, EXPECTED " + DECK_BYTES);
+			errorFound = true;
+		}
+		buffer.flip();
+		DeckOfCards copy = new DeckOfCards();
+		copy.restore(getDeck(buffer, new DeckOfCards.Snapshot()));
+		if (copy.getDealtCards() != deck.getDealtCards()){
+			System.out.println("ERROR: DECODED DECK HAS DEALT " + CardSet.toString(copy.getDealtCards()) + ", EXPECTED "
+					+ CardSet.toString(deck.getDealtCards()));
+			errorFound = true;
+		}
+		for (int i=0; i<PlayingCard.UNIQUE_CARD_COUNT; i++){
+			PlayingCard expected = deck.dealNext();
+			PlayingCard card = copy.dealNext();
+			if (card != expected){
+				System.out.println("ERROR: DECODED DECK DEALT " + card + ", EXPECTED " + expected);
+				errorFound = true;
+				break;
+			}
+		}
+
+		// Bad input should be turned away without changing the target
+		buffer.clear();
+		buffer.put((byte) PlayingCard.UNIQUE_CARD_COUNT).flip();
+		try {
+			getCard(buffer);
+			System.out.println("ERROR: ORDINAL 52 DECODED AS A CARD");
+			errorFound = true;
+		}
+		catch (IllegalArgumentException e){
+		}
+		PlayingCard[] twice = {PlayingCard.fromOrdinal(3), PlayingCard.fromOrdinal(3)};
+		buffer.clear();
+		putHand(buffer, packHand(twice, twice.length));
+		putHand(buffer, packHand(twice, 1) | (1L << 40));
+		buffer.flip();
+		for (int i=0; i<2; i++){
+			try {
+				getHand(buffer);
+				System.out.println("ERROR: BAD PACKED HAND " + i + " DECODED");
+				errorFound = true;
+			}
+			catch (IllegalArgumentException e){
+			}
+		}
+		String kept = decoded.toString();
+		long[] badHands = {5L << COUNT_SHIFT, packHand(cards, cards.length) | (1L << 40),
+				(packHand(cards, cards.length) & ~(long) ORDINAL_MASK) | PlayingCard.UNIQUE_CARD_COUNT};
+		for (int i=0; i<badHands.length; i++){
+			try {
+				unpackHand(badHands[i], decoded);
+				System.out.println("ERROR: BAD PACKED HAND " + Long.toHexString(badHands[i]) + " UNPACKED");
+				errorFound = true;
+			}
+			catch (IllegalArgumentException e){
+				if (!decoded.toString().equals(kept)){
+					System.out.println("ERROR: HAND CHANGED BY BAD PACKED HAND " + Long.toHexString(badHands[i]));
+					errorFound = true;
+				}
+			}
+		}
+		DeckOfCards.Snapshot target = deck.snapshot();
+		byte[] before = target.order.clone();
+		buffer.clear();
+		putDeck(buffer, target);
+		buffer.put(0, (byte) (buffer.get(0) ^ 1)).flip();
+		try {
+			getDeck(buffer, target);
+			System.out.println("ERROR: DECK WITH A CARD TWICE DECODED");
+			errorFound = true;
+		}
+		catch (IllegalArgumentException e){
+			if (!Arrays.equals(before, target.order)){
+				System.out.println("ERROR: SNAPSHOT CHANGED BY A BAD DECK");
+				errorFound = true;
+			}
+		}
+
+		// Time encoding and decoding packed hands through the buffer
+		long[] hands = new long[4096];
+		for (int i=0; i<hands.length; i++){
+			deck.shuffle();
+			deck.reset();
+			deck.deal(cards.length, cards);
+			hands[i] = packHand(cards, cards.length);
+		}
+		ByteBuffer handBuffer = ByteBuffer.allocateDirect(hands.length * HAND_BYTES).order(ByteOrder.nativeOrder());
+		long best = Long.MAX_VALUE;
+		long checksum = 0;
+		int rounds = 200;
+		for (int run=0; run<5; run++){
+			long start = System.nanoTime();
+			for (int round=0; round<rounds; round++){
+				handBuffer.clear();
+				for (int i=0; i<hands.length; i++){
+					putHand(handBuffer, hands[i]);
+				}
+				handBuffer.flip();
+				for (int i=0; i<hands.length; i++){
+					checksum += getHand(handBuffer);
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("Encoded and decoded %d hands in %dms, %.1fns a hand (checksum %d)%n",
+				rounds * hands.length, best / 1000000, (double) best / (rounds * hands.length), checksum & 0xFF);
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,473 @@
+package poker;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Parses cards written as PlayingCard.toString() writes them, eg. "10S AD 4C", from a
+ * CharSequence or from the bytes of a ByteBuffer, straight into card ordinals or hands
+ * packed as by CardCodec. The input is copied a block at a time into a byte array kept by
+ * the parser and read from there with table lookups, so parsing never makes a substring,
+ * a String or any other object.
+ *
+ * Cards are separated by spaces, tabs or commas, and each line holds one hand of up to
+ * CardCodec.MAX_HAND_CARDS cards. Lines end with \n or \r\n and blank lines are skipped.
+ * A card may be followed by its game value in brackets, so the output of
+ * HandOfCards.toString() can be read back too.
+ *
+ * A parser keeps its place in its input and can be pointed at new input with reset(), so
+ * one parser can be reused for every line or buffer. Malformed input throws an
+ * IllegalArgumentException giving the line and column.
+ */
+public final class CardParser {
+
+	/**
+	 * Returned by nextCard() at the end of a line and at the end of the input
+	 */
+	public static final int END_OF_LINE = -1;
+	public static final int END_OF_INPUT = -2;
+
+	/**
+	 * Returned by nextHand() at the end of the input. Never a packed hand, as a hand's
+	 * top four bits hold at most CardCodec.MAX_HAND_CARDS
+	 */
+	public static final long NO_HAND = -1L;
+
+	// Bytes of a file mapped at once by forEachHand(), lines never cross the end of one
+	private static final int CHUNK_SIZE = 1 << 30;
+
+	// Most characters the window holds, and the most a card with its game value may take
+	private static final int WINDOW_SIZE = 1 << 16;
+	private static final int MAX_TOKEN = 32;
+
+	// Index into PlayingCard.CARD_TYPES and PlayingCard.SUITS of each byte, or -1
+	private static final byte[] TYPE_INDEX = new byte[256];
+	private static final byte[] SUIT_INDEX = new byte[256];
+
+	static {
+		for (int c=0; c<256; c++){
+			TYPE_INDEX[c] = -1;
+			SUIT_INDEX[c] = -1;
+		}
+		for (int type=0; type<PlayingCard.CARD_TYPES.length; type++){
+			// Only "10" has two characters, it is read from its leading 1
+			TYPE_INDEX[PlayingCard.CARD_TYPES[type].charAt(0)] = (byte) type;
+		}
+		for (int suit=0; suit<PlayingCard.SUITS.length; suit++){
+			SUIT_INDEX[PlayingCard.SUITS[suit]] = (byte) suit;
+		}
+	}
+
+	private static final int TEN_INDEX = 9;
+
+	/*
+	 * The input, either text or bytes, read from sourcePosition up to sourceLimit. It is
+	 * copied a block at a time into window, which is parsed from position up to limit, as a
+	 * bulk copy and reads from a byte array are much faster than a call per character.
+	 * line and lineStart, the window index the line started at, are kept for error messages
+	 */
+	private CharSequence text;
+	private ByteBuffer bytes;
+	private int sourcePosition;
+	private int sourceLimit;
+	private byte[] window;
+	private int position;
+	private int limit;
+	private int line;
+	private int lineStart;
+
+	/*
+	 * Constructor reads the whole of the given text
+	 */
+	public CardParser(CharSequence text){
+		reset(text);
+	}
+
+	/*
+	 * Constructor reads the bytes of the buffer from its position to its limit, without
+	 * moving its position
+	 */
+	public CardParser(ByteBuffer bytes){
+		reset(bytes);
+	}
+
+	/**
+	 * Starts reading the whole of new text
+	 */
+	public void reset(CharSequence text){
+		this.text = text;
+		this.bytes = null;
+		start(0, text.length());
+	}
+
+	/**
+	 * Starts reading new bytes, from the buffer's position to its limit
+	 */
+	public void reset(ByteBuffer bytes){
+		this.text = null;
+		this.bytes = bytes;
+		start(bytes.position(), bytes.limit());
+	}
+
+	// Only makes a new window if the old one is too small for the input
+	private void start(int from, int to){
+		sourcePosition = from;
+		sourceLimit = to;
+		int wanted = Math.min(WINDOW_SIZE, Math.max(MAX_TOKEN, to - from));
+		if (window == null || window.length < wanted){
+			window = new byte[wanted];
+		}
+		position = 0;
+		limit = 0;
+		line = 1;
+		lineStart = 0;
+	}
+
+	/**
+	 * Makes sure at least count characters are in the window, or all that are left of the
+	 * input, moving the unread characters to the front and copying more in after them.
+	 * Characters outside ASCII are copied as 0, which is never part of a card
+	 * Returns false if there are no characters left
+	 */
+	private boolean fill(int count){
+		if (limit - position >= count || sourcePosition >= sourceLimit){
+			return limit > position;
+		}
+		int kept = limit - position;
+		System.arraycopy(window, position, window, 0, kept);
+		lineStart -= position;
+		position = 0;
+		limit = kept;
+		int length = Math.min(window.length - kept, sourceLimit - sourcePosition);
+		if (bytes != null){
+			bytes.get(sourcePosition, window, kept, length);
+		}
+		else {
+			for (int i=0; i<length; i++){
+				char c = text.charAt(sourcePosition + i);
+				window[kept + i] = (byte) (c < 128 ? c : 0);
+			}
+		}
+		sourcePosition += length;
+		limit += length;
+		return true;
+	}
+
+	/**
+	 * Returns the ordinal of the next card on the line, or END_OF_LINE once the line has
+	 * no more cards, or END_OF_INPUT once there is no more input
+	 */
+	public int nextCard(){
+		while (true){
+			if (position >= limit && !fill(1)){
+				return END_OF_INPUT;
+			}
+			if (!isSeparator(window[position])){
+				break;
+			}
+			position++;
+		}
+
+		// A whole card and the character after it are now in the window, read it with
+		// locals so the loop does not write fields back each step
+		fill(MAX_TOKEN);
+		byte[] window = this.window;
+		int limit = this.limit;
+		int p = position;
+		int c = window[p] & 0xFF;
+		if (c == '\n' || c == '\r'){
+			p++;
+			if (c == '\r' && p < limit && window[p] == '\n'){
+				p++;
+			}
+			position = p;
+			line++;
+			lineStart = p;
+			return END_OF_LINE;
+		}
+
+		int type = TYPE_INDEX[c];
+		p++;
+		if (type == TEN_INDEX){
+			if (p >= limit || window[p] != '0'){
+				throw badCard(position);
+			}
+			p++;
+		}
+		if (type < 0 || p >= limit){
+			throw badCard(position);
+		}
+		int suit = SUIT_INDEX[window[p] & 0xFF];
+		if (suit < 0){
+			throw badCard(position);
+		}
+		p++;
+
+		// Skip a game value in brackets, as HandOfCards.toString() writes
+		if (p < limit && window[p] == '('){
+			p++;
+			while (p < limit && window[p] >= '0' && window[p] <= '9'){
+				p++;
+			}
+			if (p >= limit || window[p] != ')'){
+				throw badCard(position);
+			}
+			p++;
+		}
+
+		// The card must end at a separator or the end of the line
+		if (p < limit){
+			c = window[p];
+			if (!isSeparator(c) && c != '\n' && c != '\r'){
+				throw badCard(position);
+			}
+		}
+		position = p;
+		return suit * PlayingCard.CARD_TYPES.length + type;
+	}
+
+	/**
+	 * Returns the cards on the next line that has any, packed as by CardCodec, or NO_HAND
+	 * once there is no more input
+	 */
+	public long nextHand(){
+		int handLine = line;
+		long packed = 0;
+		long seen = CardSet.EMPTY;
+		int count = 0;
+		int card;
+		while (true){
+			card = nextCard();
+			if (card >= 0){
+				if (count == CardCodec.MAX_HAND_CARDS || CardSet.contains(seen, card)){
+					throw new IllegalArgumentException("Line " + handLine + " has more than " + CardCodec.MAX_HAND_CARDS
+							+ " cards or a card twice");
+				}
+				seen = CardSet.add(seen, card);
+				packed |= (long) card << (CardCodec.ORDINAL_BITS * count);
+				count++;
+			}
+			else if (count > 0){
+				return packed | ((long) count << CardCodec.COUNT_SHIFT);
+			}
+			else if (card == END_OF_INPUT){
+				return NO_HAND;
+			}
+			else {
+				handLine = line;
+			}
+		}
+	}
+
+	// Accessor for the line the parser is on, counting from 1
+	public int getLine(){
+		return line;
+	}
+
+	/**
+	 * Returns the ordinal of the card written in the text, eg. 10S, with nothing else around it
+	 */
+	public static int parseCard(CharSequence text){
+		CardParser parser = new CardParser(text);
+		int card = parser.nextCard();
+		if (card < 0 || parser.nextCard() != END_OF_INPUT){
+			throw new IllegalArgumentException("Not a single card: " + text);
+		}
+		return card;
+	}
+
+	/**
+	 * Parses every hand in a file of hands, one a line, passing each packed hand to the
+	 * action in file order on the calling thread. The file is mapped into memory a gigabyte
+	 * at a time, so files of any size are read with one parser and no copying. Parsing runs
+	 * on one core and is slower than a fast disk, about 150 to 250MB a second
+	 */
+	public static void forEachHand(Path file, LongConsumer action) throws IOException{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			long chunkStart = 0;
+			CardParser parser = null;
+			while (chunkStart < size){
+				int length = (int) Math.min(CHUNK_SIZE, size - chunkStart);
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, length);
+
+				// Stop after the last whole line, unless this is the end of the file
+				if (chunkStart + length < size){
+					int end = length;
+					while (end > 0 && chunk.get(end - 1) != '\n'){
+						end--;
+					}
+					if (end == 0){
+						throw new IllegalArgumentException("Line too long at byte " + chunkStart + " of " + file);
+					}
+					chunk.limit(end);
+				}
+				if (parser == null){
+					parser = new CardParser(chunk);
+				}
+				else {
+					int line = parser.line;
+					parser.reset(chunk);
+					parser.line = line;
+				}
+				for (long hand=parser.nextHand(); hand!=NO_HAND; hand=parser.nextHand()){
+					action.accept(hand);
+				}
+				chunkStart += chunk.limit();
+			}
+		}
+	}
+
+	private static boolean isSeparator(int c){
+		return c == ' ' || c == '\t' || c == ',';
+	}
+
+	// Exception for a malformed card starting at the given index
+	private IllegalArgumentException badCard(int start){
+		return new IllegalArgumentException("Bad card at line " + line + " column " + (start - lineStart + 1));
+	}
+
+	/*
+	 * Main method parses every card and printed hands, checks malformed input is turned
+	 * away, checks parsing text allocates nothing, then writes a file of hands and times
+	 * reading it back
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		boolean errorFound = false;
+
+		// Every card should parse back from its own toString()
+		for (int ordinal=0; ordinal<PlayingCard.UNIQUE_CARD_COUNT; ordinal++){
+			if (parseCard(PlayingCard.fromOrdinal(ordinal).toString()) != ordinal){
+				System.out.println("ERROR: " + PlayingCard.fromOrdinal(ordinal) + " PARSED AS " + parseCard(PlayingCard.fromOrdinal(ordinal).toString()));
+				errorFound = true;
+			}
+		}
+
+		// Hands printed by HandOfCards, with game values, and by PlayingCard should parse back the same
+		DeckOfCards deck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		StringBuilder dump = new StringBuilder();
+		long[] expected = new long[2000];
+		PlayingCard[] cards = new PlayingCard[HandOfCards.CARDS_HELD];
+		for (int i=0; i<expected.length; i++){
+			deck.shuffle();
+			deck.reset();
+			HandOfCards hand = new HandOfCards(deck);
+			expected[i] = CardCodec.packHand(hand);
+			if (i % 2 == 0){
+				dump.append(hand.toString()).append(i % 4 == 0 ? "\n" : "\r\n\n");
+			}
+			else {
+				for (int j=0; j<cards.length; j++){
+					dump.append(j == 0 ? "" : ", ").append(hand.getCard(j));
+				}
+				dump.append('\n');
+			}
+		}
+		CardParser parser = new CardParser(dump);
+		for (int i=0; i<expected.length && !errorFound; i++){
+			long hand = parser.nextHand();
+			if (hand != expected[i]){
+				System.out.println("ERROR: HAND " + i + " PARSED AS " + Long.toHexString(hand) + ", EXPECTED "
+						+ Long.toHexString(expected[i]));
+				errorFound = true;
+			}
+		}
+		if (parser.nextHand() != NO_HAND){
+			System.out.println("ERROR: HANDS LEFT AFTER THE LAST");
+			errorFound = true;
+		}
+
+		// Malformed cards and hands should be turned away
+		String[] badInput = {"1S", "11S", "AX", "A", "10", "ADX", "AD(14", "AD AD", "ZS", "AD 2D 3D 4D 5D 6D 7D 8D 9D 10D JD"};
+		for (int i=0; i<badInput.length; i++){
+			try {
+				parser.reset(badInput[i]);
+				parser.nextHand();
+				System.out.println("ERROR: " + badInput[i] + " PARSED");
+				errorFound = true;
+			}
+			catch (IllegalArgumentException e){
+			}
+		}
+
+		// Parsing text should allocate nothing once warmed up
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long threadId = Thread.currentThread().getId();
+			long allocated = 0;
+			long checksum = 0;
+			for (int round=0; round<20; round++){
+				long before = threads.getThreadAllocatedBytes(threadId);
+				parser.reset(dump);
+				for (long hand=parser.nextHand(); hand!=NO_HAND; hand=parser.nextHand()){
+					checksum += hand;
+				}
+				allocated = threads.getThreadAllocatedBytes(threadId) - before;
+			}
+			System.out.println("Bytes allocated parsing " + expected.length + " hands: " + allocated + ", EXPECTED: 0 (checksum "
+					+ (checksum & 0xFF) + ")");
+			if (allocated != 0){
+				errorFound = true;
+			}
+		}
+
+		// Write a file of hands and time reading it back
+		Path file = Files.createTempFile("hands", ".txt");
+		int copies = 500;
+		StringBuilder block = new StringBuilder();
+		for (int i=0; i<expected.length; i++){
+			for (int j=0; j<HandOfCards.CARDS_HELD; j++){
+				block.append(j == 0 ? "" : " ").append(CardCodec.handCard(expected[i], j));
+			}
+			block.append('\n');
+		}
+		byte[] blockBytes = block.toString().getBytes(StandardCharsets.US_ASCII);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+			for (int i=0; i<copies; i++){
+				channel.write(ByteBuffer.wrap(blockBytes));
+			}
+		}
+		long expectedTotal = 0;
+		for (int i=0; i<expected.length; i++){
+			expectedTotal += expected[i];
+		}
+		long best = Long.MAX_VALUE;
+		long[] total = new long[2];
+		for (int run=0; run<5; run++){
+			total[0] = 0;
+			total[1] = 0;
+			long start = System.nanoTime();
+			forEachHand(file, hand -> {
+				total[0] += hand;
+				total[1]++;
+			});
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		long fileSize = Files.size(file);
+		System.out.printf("Parsed %d hands from %dMB in %dms, %.0fMB/s%n", total[1], fileSize >> 20, best / 1000000,
+				fileSize * 1000.0 / best);
+		if (total[1] != (long) copies * expected.length || total[0] != expectedTotal * copies){
+			System.out.println("ERROR: PARSED " + total[1] + " HANDS FROM THE FILE, EXPECTED " + (long) copies * expected.length);
+			errorFound = true;
+		}
+		Files.delete(file);
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+package poker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Works out the exact result of every way of discarding from a hand of five cards.
+ *
+ * For each of the 32 subsets of the hand that could be discarded, every possible draw
+ * of replacement cards from the unseen cards is enumerated and scored with HandEvaluator.
+ * This gives the exact probability of ending up with each hand type and the expected
+ * game value after the draw, rather than the estimates of HandOfCards.getDiscardProbability.
+ *
+ * Discard subsets are given as masks where bit i set means the card at position i of the
+ * hand is thrown away. The draws are split into fork/join tasks, about 2.6 million hands
+ * in all for the full analysis of one hand.
+ */
+public final class DiscardAnalyzer {
+
+	/**
+	 * Number of different subsets of a hand that can be discarded, including none
+	 */
+	public static final int SUBSET_COUNT = 1 << HandOfCards.CARDS_HELD;
+
+	// Number of hand types, from high hand up to royal flush
+	private static final int HAND_TYPES = 10;
+
+	// Discard subsets that draw at least this many cards are split into a task per first card drawn
+	private static final int SPLIT_DRAW_SIZE = 3;
+
+	// No instances, all methods are static
+	private DiscardAnalyzer(){
+	}
+
+	/**
+	 * The exact outcome of one way of discarding
+	 */
+	public static final class Outcome {
+
+		private final int discardMask;
+		private long draws;
+		private long gameValueTotal;
+		private final long[] handTypeCounts = new long[HAND_TYPES + 1];
+
+		private Outcome(int discardMask){
+			this.discardMask = discardMask;
+		}
+
+		// Adds the counts of another set of draws for the same discard
+		private synchronized void add(long moreDraws, long moreGameValues, long[] moreHandTypes){
+			draws += moreDraws;
+			gameValueTotal += moreGameValues;
+			for (int i=0; i<handTypeCounts.length; i++){
+				handTypeCounts[i] += moreHandTypes[i];
+			}
+		}
+
+		// Accessor for the discard mask, bit i set for each hand position discarded
+		public int getDiscardMask(){
+			return discardMask;
+		}
+
+		// Accessor for the number of different draws enumerated
+		public long getDraws(){
+			return draws;
+		}
+
+		/**
+		 * Returns the probability from 0 to 1 of ending with the given hand type
+		 * @param handTypeDefault One of the *_DEFAULT constants of HandOfCards
+		 */
+		public double getProbability(int handTypeDefault){
+			return (double) handTypeCounts[handTypeDefault / HandOfCards.HIGH_HAND_DEFAULT] / draws;
+		}
+
+		/**
+		 * Returns the expected game value of the hand after the draw
+		 */
+		public double getExpectedGameValue(){
+			return (double) gameValueTotal / draws;
+		}
+	}
+
+	/**
+	 * Analyzes all 32 ways of discarding from a hand, with the rest of the pack unseen
+	 * @return Outcomes indexed by discard mask
+	 */
+	public static Outcome[] analyze(HandOfCards hand){
+		return analyze(hand, CardSet.EMPTY);
+	}
+
+	/**
+	 * Analyzes all 32 ways of discarding from a hand
+	 * @param deadCards CardSet of cards known not to be in the deck, eg. those seen elsewhere
+	 * @return Outcomes indexed by discard mask
+	 */
+	public static Outcome[] analyze(HandOfCards hand, long deadCards){
+		PlayingCard[] cards = new PlayingCard[HandOfCards.CARDS_HELD];
+		for (int i=0; i<cards.length; i++){
+			cards[i] = hand.getCard(i);
+		}
+		return analyze(cards, deadCards, HandOfCards.CARDS_HELD);
+	}
+
+	/**
+	 * Analyzes the ways of discarding up to maxDiscards of five cards
+	 * @param cards The five cards held, bit i of a discard mask is the card at position i
+	 * @param deadCards CardSet of cards known not to be in the deck, eg. those seen elsewhere
+	 * @return Outcomes indexed by discard mask, null for masks discarding more than maxDiscards
+	 */
+	public static Outcome[] analyze(PlayingCard[] cards, long deadCards, int maxDiscards){
+		int[] handCards = new int[HandOfCards.CARDS_HELD];
+		for (int i=0; i<handCards.length; i++){
+			handCards[i] = HandEvaluator.encode(cards[i]);
+		}
+		long unseen = CardSet.FULL_PACK & ~CardSet.of(cards) & ~deadCards;
+		int[] unseenCards = new int[CardSet.size(unseen)];
+		int filled = 0;
+		for (long remaining = unseen; remaining != 0; remaining &= remaining - 1){
+			unseenCards[filled] = HandEvaluator.encode(CardSet.lowestIndex(remaining));
+			filled++;
+		}
+
+		Outcome[] outcomes = new Outcome[SUBSET_COUNT];
+		List<DrawTask> tasks = new ArrayList<DrawTask>();
+		for (int mask=0; mask<SUBSET_COUNT; mask++){
+			if (Integer.bitCount(mask) > maxDiscards){
+				continue;
+			}
+			outcomes[mask] = new Outcome(mask);
+			if (Integer.bitCount(mask) < SPLIT_DRAW_SIZE){
+				tasks.add(new DrawTask(outcomes[mask], handCards, unseenCards, 0, unseenCards.length));
+			}
+			else {
+				for (int first=0; first<unseenCards.length; first++){
+					tasks.add(new DrawTask(outcomes[mask], handCards, unseenCards, first, first + 1));
+				}
+			}
+		}
+
+		ForkJoinPool.commonPool().invoke(new RecursiveAction(){
+			protected void compute(){
+				invokeAll(tasks);
+			}
+		});
+		return outcomes;
+	}
+
+	/**
+	 * Enumerates the draws for one discard mask where the first card drawn is taken
+	 * from unseen positions firstFrom up to but not including firstTo
+	 */
+	private static final class DrawTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Outcome outcome;
+		private final int[] handCards, unseenCards;
+		private final int firstFrom, firstTo;
+
+		private DrawTask(Outcome outcome, int[] handCards, int[] unseenCards, int firstFrom, int firstTo){
+			this.outcome = outcome;
+			this.handCards = handCards;
+			this.unseenCards = unseenCards;
+			this.firstFrom = firstFrom;
+			this.firstTo = firstTo;
+		}
+
+		protected void compute(){
+			int[] cards = new int[HandOfCards.CARDS_HELD];
+			int kept = 0;
+			for (int i=0; i<handCards.length; i++){
+				if ((outcome.discardMask & (1 << i)) == 0){
+					cards[kept] = handCards[i];
+					kept++;
+				}
+			}
+			int drawSize = cards.length - kept;
+			long[] handTypes = new long[HAND_TYPES + 1];
+			long draws = 0, gameValues = 0;
+
+			if (drawSize == 0){
+				int gameValue = HandEvaluator.evaluate(cards[0], cards[1], cards[2], cards[3], cards[4]);
+				handTypes[gameValue / HandOfCards.HIGH_HAND_DEFAULT]++;
+				outcome.add(1, gameValue, handTypes);
+				return;
+			}
+
+			// Positions in unseenCards of the cards drawn, always in increasing order
+			int[] drawn = new int[drawSize];
+			for (int first=firstFrom; first<firstTo; first++){
+				drawn[0] = first;
+				for (int i=1; i<drawSize; i++){
+					drawn[i] = first + i;
+				}
+				while (drawn[drawSize-1] < unseenCards.length){
+					for (int i=0; i<drawSize; i++){
+						cards[kept + i] = unseenCards[drawn[i]];
+					}
+					int gameValue = HandEvaluator.evaluate(cards[0], cards[1], cards[2], cards[3], cards[4]);
+					handTypes[gameValue / HandOfCards.HIGH_HAND_DEFAULT]++;
+					gameValues += gameValue;
+					draws++;
+
+					// Move on to the next combination with the same first card
+					int i = drawSize - 1;
+					while (i > 0 && drawn[i] == unseenCards.length - drawSize + i){
+						i--;
+					}
+					if (i == 0){
+						break;
+					}
+					drawn[i]++;
+					for (int j=i+1; j<drawSize; j++){
+						drawn[j] = drawn[j-1] + 1;
+					}
+				}
+			}
+			outcome.add(draws, gameValues, handTypes);
+		}
+	}
+
+	/*
+	 * Main method tests the analyzer on a four card flush draw and checks every discard
+	 * enumerates the right number of draws, then times a full analysis
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		HandOfCards hand = new HandOfCards(new DeckOfCards());
+		String[] handTypes = {"High Hand", "One Pair", "Two Pair", "Three Of A Kind", "Straight",
+				"Flush", "Full House", "Four Of A Kind", "Straight Flush", "Royal Flush"};
+
+		// Ace, king, seven, four of hearts and two of clubs
+		PlayingCard[] flushDraw = {PlayingCard.of(1, PlayingCard.HEARTS), PlayingCard.of(13, PlayingCard.HEARTS),
+				PlayingCard.of(7, PlayingCard.HEARTS), PlayingCard.of(4, PlayingCard.HEARTS), PlayingCard.of(2, PlayingCard.CLUBS)};
+		long start = System.currentTimeMillis();
+		hand.setHand(flushDraw);
+		Outcome[] outcomes = analyze(hand);
+		System.out.println("Analyzed all discards in " + (System.currentTimeMillis() - start) + "ms");
+
+		// Number of draws should be 47 choose the number of cards discarded
+		for (int mask=0; mask<SUBSET_COUNT; mask++){
+			long expectedDraws = 1;
+			for (int i=0; i<Integer.bitCount(mask); i++){
+				expectedDraws = expectedDraws * (47 - i) / (i + 1);
+			}
+			double totalProbability = 0;
+			for (int handType=1; handType<=HAND_TYPES; handType++){
+				totalProbability += outcomes[mask].getProbability(handType * HandOfCards.HIGH_HAND_DEFAULT);
+			}
+			if (outcomes[mask].getDraws() != expectedDraws || Math.abs(totalProbability - 1) > 1e-9){
+				System.out.println("ERROR: MASK " + mask + " ENUMERATED " + outcomes[mask].getDraws()
+						+ " DRAWS, EXPECTED " + expectedDraws);
+				errorFound = true;
+			}
+		}
+
+		// Throwing away the two of clubs, at position 4, makes a flush with any of the 9 hearts left
+		Outcome drawToFlush = outcomes[1 << 4];
+		System.out.println(hand.toString() + "discarding " + hand.getCard(4) + ":");
+		for (int handType=1; handType<=HAND_TYPES; handType++){
+			System.out.println("\t" + handTypes[handType-1] + ": "
+					+ drawToFlush.getProbability(handType * HandOfCards.HIGH_HAND_DEFAULT));
+		}
+		System.out.println("\tExpected game value: " + drawToFlush.getExpectedGameValue());
+		if (Math.abs(drawToFlush.getProbability(HandOfCards.FLUSH_DEFAULT) - 9.0/47) > 1e-9){
+			System.out.println("ERROR: FLUSH DRAW PROBABILITY WRONG, EXPECTED " + 9.0/47);
+			errorFound = true;
+		}
+
+		// Keeping everything should always give the hand itself
+		if (outcomes[0].getProbability(HandOfCards.HIGH_HAND_DEFAULT) != 1
+				|| outcomes[0].getExpectedGameValue() != hand.getGameValue()){
+			System.out.println("ERROR: STANDING PAT SHOULD KEEP THE HAND");
+			errorFound = true;
+		}
+
+		// Time a few more full analyses now the JIT compiler has warmed up
+		for (int i=0; i<3; i++){
+			start = System.currentTimeMillis();
+			analyze(hand);
+			System.out.println("Analyzed all discards in " + (System.currentTimeMillis() - start) + "ms");
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,374 @@
+package poker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed best discard for every five card hand, so a player can decide what to
+ * throw away with a single read instead of working it out at the table.
+ *
+ * The best discard is the one of up to three cards with the highest expected game value
+ * after the draw, worked out exactly with DiscardAnalyzer. Suits are all equal in value,
+ * so only one hand out of each group that differs only by suits (134,459 in all) is analyzed
+ * and the result is copied to the others.
+ *
+ * The file holds one byte per hand, in the same combinatorial index order as HandRankTable.
+ * Bit i of the byte is set if the card with the i-th lowest ordinal should be discarded:
+ *
+ * 	int magic, int hand count, byte[hand count] discard masks
+ *
+ * Building the table analyzes every suit canonical hand and takes some minutes, so it is
+ * meant to be run once offline, see main(String[]). A program can then name the file in
+ * the poker.drawStrategyTable system property and it is mapped on first use by shared().
+ */
+public final class DrawStrategyTable {
+
+	/**
+	 * Most cards a player may discard in one draw
+	 */
+	public static final int MAX_DISCARDS = 3;
+
+	/**
+	 * System property naming the table file shared() maps
+	 */
+	public static final String TABLE_PROPERTY = "poker.drawStrategyTable";
+
+	// Marks the start of a strategy table file, "PDS1"
+	private static final int MAGIC = 0x50445331;
+	private static final int HEADER_BYTES = 8;
+
+	// Number of card types in a suit
+	private static final int TYPES_PER_SUIT = 13;
+	private static final long SUIT_BITS = (1L << TYPES_PER_SUIT) - 1;
+
+	// All 24 ways of reordering the four suits
+	private static final int[][] SUIT_PERMUTATIONS = new int[24][];
+
+	static {
+		int filled = 0;
+		for (int a=0; a<4; a++){
+			for (int b=0; b<4; b++){
+				for (int c=0; c<4; c++){
+					int d = 6 - a - b - c;
+					if (a != b && a != c && b != c && d != a && d != b && d != c){
+						SUIT_PERMUTATIONS[filled] = new int[] {a, b, c, d};
+						filled++;
+					}
+				}
+			}
+		}
+	}
+
+	// The table named by TABLE_PROPERTY, mapped by the first call to shared()
+	private static volatile DrawStrategyTable shared;
+	private static volatile boolean sharedLooked;
+
+	// The mapped file
+	private final MappedByteBuffer buffer;
+
+	private DrawStrategyTable(MappedByteBuffer buffer){
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Maps a table file written by write(Path) into memory
+	 * @throws IOException if the file can not be read or is not a strategy table
+	 */
+	public static DrawStrategyTable map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() != HEADER_BYTES + HandRankTable.HAND_COUNT || buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != HandRankTable.HAND_COUNT){
+				throw new IOException("Not a draw strategy table: " + file);
+			}
+			return new DrawStrategyTable(buffer);
+		}
+	}
+
+	/**
+	 * Returns the table in the file named by the poker.drawStrategyTable system property,
+	 * mapped the first time this is called and shared from then on, or null if the
+	 * property is not set
+	 * @throws UncheckedIOException if the named file can not be mapped as a strategy table
+	 */
+	public static DrawStrategyTable shared(){
+		if (!sharedLooked){
+			synchronized (DrawStrategyTable.class){
+				if (!sharedLooked){
+					String file = System.getProperty(TABLE_PROPERTY);
+					if (file != null){
+						try {
+							shared = map(Paths.get(file));
+						}
+						catch (IOException e){
+							throw new UncheckedIOException("Can not map the " + TABLE_PROPERTY + " file", e);
+						}
+					}
+					sharedLooked = true;
+				}
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * Returns the best discard for a hand as a mask of positions in the hand,
+	 * bit i set if hand.getCard(i) should be thrown away
+	 */
+	public int discardMask(HandOfCards hand){
+		long cards = hand.getCardSet();
+		int ordinalMask = buffer.get(HEADER_BYTES + HandRankTable.indexOf(cards));
+		int positionMask = 0;
+		for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+			if ((ordinalMask & (1 << orderInSet(cards, hand.getCard(i).ordinal()))) != 0){
+				positionMask |= 1 << i;
+			}
+		}
+		return positionMask;
+	}
+
+	/**
+	 * Returns the best discard for five cards as a mask of positions in the array,
+	 * bit i set if cards[i] should be thrown away
+	 */
+	public int discardMask(PlayingCard[] cards){
+		long cardSet = CardSet.of(cards);
+		int ordinalMask = buffer.get(HEADER_BYTES + HandRankTable.indexOf(cardSet));
+		int positionMask = 0;
+		for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+			if ((ordinalMask & (1 << orderInSet(cardSet, cards[i].ordinal()))) != 0){
+				positionMask |= 1 << i;
+			}
+		}
+		return positionMask;
+	}
+
+	/**
+	 * Works out the best discard of up to three cards by exact analysis of every draw.
+	 * This scores every draw for all 26 discards and takes milliseconds, where a table
+	 * read takes nanoseconds, so is meant for building the table and for checking it
+	 * @return Mask of positions in the array to discard
+	 */
+	public static int bestDiscardMask(PlayingCard[] cards){
+		DiscardAnalyzer.Outcome[] outcomes = DiscardAnalyzer.analyze(cards, CardSet.EMPTY, MAX_DISCARDS);
+		int bestMask = 0;
+		for (int mask=1; mask<outcomes.length; mask++){
+			if (outcomes[mask] != null && outcomes[mask].getExpectedGameValue() > outcomes[bestMask].getExpectedGameValue()){
+				bestMask = mask;
+			}
+		}
+		return bestMask;
+	}
+
+	/**
+	 * Analyzes every suit canonical hand and writes the table to a file
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(Path file) throws IOException {
+		byte[] masks = new byte[HandRankTable.HAND_COUNT];
+		long[] hands = allHands();
+
+		// Analyze only the hands that are their own canonical form
+		IntStream.range(0, hands.length).parallel().forEach(index -> {
+			if (canonical(hands[index]) == hands[index]){
+				masks[index] = (byte) bestDiscardMask(hands[index]);
+			}
+		});
+
+		// Copy each canonical result to the hands with the same cards in other suits
+		for (int index=0; index<hands.length; index++){
+			long canonicalHand = canonical(hands[index]);
+			if (canonicalHand != hands[index]){
+				int[] permutation = permutationBetween(hands[index], canonicalHand);
+				long canonicalDiscards = fromOrdinalMask(canonicalHand, masks[HandRankTable.indexOf(canonicalHand)]);
+				long discards = permute(canonicalDiscards, inverse(permutation));
+				masks[index] = (byte) ordinalMaskOf(hands[index], discards);
+			}
+		}
+
+		ByteBuffer output = ByteBuffer.allocate(HEADER_BYTES + masks.length);
+		output.putInt(MAGIC).putInt(HandRankTable.HAND_COUNT).put(masks);
+		output.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			while (output.hasRemaining()){
+				channel.write(output);
+			}
+		}
+	}
+
+	/**
+	 * Returns every five card hand as a CardSet, in combinatorial index order
+	 */
+	private static long[] allHands(){
+		long[] hands = new long[HandRankTable.HAND_COUNT];
+		int index = 0;
+		for (int c5=4; c5<PlayingCard.UNIQUE_CARD_COUNT; c5++){
+			for (int c4=3; c4<c5; c4++){
+				for (int c3=2; c3<c4; c3++){
+					for (int c2=1; c2<c3; c2++){
+						for (int c1=0; c1<c2; c1++){
+							hands[index] = (1L << c1) | (1L << c2) | (1L << c3) | (1L << c4) | (1L << c5);
+							index++;
+						}
+					}
+				}
+			}
+		}
+		return hands;
+	}
+
+	/**
+	 * Best discard of a CardSet hand. The cards are analyzed in ordinal order
+	 * so the mask of positions is also the mask in ordinal order
+	 */
+	private static int bestDiscardMask(long hand){
+		PlayingCard[] cards = new PlayingCard[HandOfCards.CARDS_HELD];
+		int filled = 0;
+		for (long remaining = hand; remaining != 0; remaining &= remaining - 1){
+			cards[filled] = PlayingCard.fromOrdinal(CardSet.lowestIndex(remaining));
+			filled++;
+		}
+		return bestDiscardMask(cards);
+	}
+
+	// Returns how many cards in the set have a lower ordinal than the given one
+	private static int orderInSet(long cards, int ordinal){
+		return Long.bitCount(cards & ((1L << ordinal) - 1));
+	}
+
+	// Returns the CardSet of cards in the hand picked out by an ordinal order mask
+	private static long fromOrdinalMask(long hand, int ordinalMask){
+		long picked = CardSet.EMPTY;
+		int position = 0;
+		for (long remaining = hand; remaining != 0; remaining &= remaining - 1){
+			if ((ordinalMask & (1 << position)) != 0){
+				picked = CardSet.add(picked, CardSet.lowestIndex(remaining));
+			}
+			position++;
+		}
+		return picked;
+	}
+
+	// Returns the ordinal order mask of the picked cards within the hand
+	private static int ordinalMaskOf(long hand, long picked){
+		int ordinalMask = 0;
+		for (long remaining = picked; remaining != 0; remaining &= remaining - 1){
+			ordinalMask |= 1 << orderInSet(hand, CardSet.lowestIndex(remaining));
+		}
+		return ordinalMask;
+	}
+
+	/**
+	 * Moves the cards of each suit s in a CardSet to suit permutation[s]
+	 */
+	private static long permute(long cards, int[] permutation){
+		long permuted = CardSet.EMPTY;
+		for (int suit=0; suit<permutation.length; suit++){
+			permuted |= ((cards >>> (suit * TYPES_PER_SUIT)) & SUIT_BITS) << (permutation[suit] * TYPES_PER_SUIT);
+		}
+		return permuted;
+	}
+
+	// Returns the permutation that undoes the given one
+	private static int[] inverse(int[] permutation){
+		int[] inverse = new int[permutation.length];
+		for (int suit=0; suit<permutation.length; suit++){
+			inverse[permutation[suit]] = suit;
+		}
+		return inverse;
+	}
+
+	/**
+	 * Returns the canonical form of a hand, the smallest CardSet it can be turned into
+	 * by reordering the suits
+	 */
+	private static long canonical(long hand){
+		long smallest = hand;
+		for (int[] permutation : SUIT_PERMUTATIONS){
+			smallest = Math.min(smallest, permute(hand, permutation));
+		}
+		return smallest;
+	}
+
+	// Returns a suit permutation turning hand into target
+	private static int[] permutationBetween(long hand, long target){
+		for (int[] permutation : SUIT_PERMUTATIONS){
+			if (permute(hand, permutation) == target){
+				return permutation;
+			}
+		}
+		throw new IllegalArgumentException("Hands differ by more than suits");
+	}
+
+	/*
+	 * Writes the table to the path given as first argument. With no arguments tests the
+	 * canonical hand mapping and the discards chosen for a few well known hands
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length > 0){
+			long start = System.currentTimeMillis();
+			write(Paths.get(args[0]));
+			System.out.println("Wrote draw strategy table in " + (System.currentTimeMillis() - start)/1000 + "s");
+			return;
+		}
+
+		boolean errorFound = false;
+
+		// Every hand should map to a canonical hand and back with its discards
+		long[] hands = allHands();
+		long canonicalCount = 0;
+		for (int index=0; index<hands.length; index++){
+			long canonicalHand = canonical(hands[index]);
+			if (canonicalHand == hands[index]){
+				canonicalCount++;
+			}
+			int[] permutation = permutationBetween(hands[index], canonicalHand);
+			long discards = fromOrdinalMask(canonicalHand, 0x15);
+			long mappedBack = permute(discards, inverse(permutation));
+			if (canonical(canonicalHand) != canonicalHand || CardSet.size(mappedBack & hands[index]) != 3){
+				System.out.println("ERROR: CANONICAL MAPPING WRONG FOR " + CardSet.toString(hands[index]));
+				errorFound = true;
+			}
+		}
+		System.out.println(canonicalCount + " suit canonical hands, EXPECTED: 134459");
+		if (canonicalCount != 134459){
+			errorFound = true;
+		}
+
+		// Four to a flush should throw the odd card, a pat straight keep everything
+		// and three of a kind throw the other two
+		PlayingCard[][] testHands = {
+			{PlayingCard.of(1, 'H'), PlayingCard.of(13, 'H'), PlayingCard.of(7, 'H'), PlayingCard.of(4, 'H'), PlayingCard.of(2, 'C')},
+			{PlayingCard.of(9, 'H'), PlayingCard.of(8, 'S'), PlayingCard.of(7, 'H'), PlayingCard.of(6, 'D'), PlayingCard.of(5, 'C')},
+			{PlayingCard.of(9, 'H'), PlayingCard.of(9, 'S'), PlayingCard.of(9, 'D'), PlayingCard.of(13, 'D'), PlayingCard.of(2, 'C')}
+		};
+		int[] expectedMasks = {0x10, 0, 0x18};
+		for (int i=0; i<testHands.length; i++){
+			int mask = bestDiscardMask(testHands[i]);
+			System.out.println(Arrays.toString(testHands[i]) + " discard mask " + mask + ", EXPECTED: " + expectedMasks[i]);
+			if (mask != expectedMasks[i]){
+				System.out.println("####### Failed test above");
+				errorFound = true;
+			}
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
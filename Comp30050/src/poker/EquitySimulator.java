@@ -0,0 +1,445 @@
+package poker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimates the equity of five cards against a number of opponents in a round of five
+ * card draw by playing out randomly dealt rounds.
+ *
+ * In each round the opponents are dealt five cards from the rest of the pack, then every
+ * player discards by the same policy and draws, and the hands are compared. Ties share the
+ * pot, so equity is the win rate plus each tie divided between the players in it.
+ *
+ * Rounds are played on one task per processor, each with its own SplittableRandom split
+ * from the simulator's and its own DeckOfCards, and added into LongAdders in batches.
+ * The simulation stops when the 95% confidence interval on the equity is narrow enough,
+ * when the time limit is reached or after the maximum number of rounds.
+ */
+public class EquitySimulator {
+
+	/**
+	 * Chooses which cards a player throws away
+	 */
+	public interface DiscardPolicy {
+
+		/**
+		 * Returns a mask of positions in the array to discard, at most three cards
+		 */
+		int discardMask(PlayingCard[] cards);
+	}
+
+	/**
+	 * Policy that never discards
+	 */
+	public static final DiscardPolicy STAND_PAT = cards -> 0;
+
+	/**
+	 * Policy that keeps straights and better, otherwise throws away every card that does
+	 * not match another, keeping the highest two when nothing matches
+	 */
+	public static final DiscardPolicy KEEP_MATCHES = EquitySimulator::keepMatches;
+
+	/**
+	 * Most opponents there are always enough cards for, with everyone drawing three
+	 */
+	public static final int MAX_OPPONENTS = 4;
+
+	// Defaults for simulate(PlayingCard[]), tight enough for a bot to act within 50ms. The
+	// time limit leaves room for the last rounds and for the thread being descheduled
+	public static final long DEFAULT_MAX_ROUNDS = 2000000;
+	public static final double DEFAULT_HALF_WIDTH = 0.005;
+	public static final long DEFAULT_TIME_LIMIT_NANOS = 40000000L;
+
+	// Rounds each task plays between adding up its counts and checking whether to stop
+	private static final int BATCH_SIZE = 512;
+
+	// Rounds between checks of the time limit within a batch, so a batch never runs far past it
+	private static final int DEADLINE_CHECK_MASK = 63;
+
+	// Rounds played before the confidence interval is trusted
+	private static final long MIN_ROUNDS = 2000;
+
+	// Normal quantile for a 95% confidence interval
+	private static final double Z_95 = 1.959964;
+
+	private final int opponents;
+	private final DiscardPolicy policy;
+	private final SplittableRandom random;
+
+	/*
+	 * Constructor takes the number of opponents and the discard policy every player uses
+	 */
+	public EquitySimulator(int opponents, DiscardPolicy policy){
+		this(opponents, policy, new SplittableRandom());
+	}
+
+	/*
+	 * Constructor with a seed, which fixes the random stream each task deals from. The
+	 * number of rounds played still depends on timing, as every task stops on the time limit
+	 * and on counts added up across tasks, so the estimate can differ from run to run
+	 */
+	public EquitySimulator(int opponents, DiscardPolicy policy, long seed){
+		this(opponents, policy, new SplittableRandom(seed));
+	}
+
+	private EquitySimulator(int opponents, DiscardPolicy policy, SplittableRandom random){
+		if (opponents < 1 || opponents > MAX_OPPONENTS){
+			throw new IllegalArgumentException("Opponents must be from 1 to " + MAX_OPPONENTS + ", got " + opponents);
+		}
+		this.opponents = opponents;
+		this.policy = policy;
+		this.random = random;
+	}
+
+	/**
+	 * The estimated outcome of a simulation
+	 */
+	public static final class Result {
+
+		private final long rounds, wins, ties, losses;
+		private final double equity, halfWidth;
+		private final long elapsedNanos;
+
+		private Result(long wins, long ties, long losses, double equitySum, double equitySquares, long elapsedNanos){
+			this.wins = wins;
+			this.ties = ties;
+			this.losses = losses;
+			this.rounds = wins + ties + losses;
+			this.equity = equitySum / rounds;
+			double variance = Math.max(0, equitySquares / rounds - equity * equity);
+			this.halfWidth = Z_95 * Math.sqrt(variance / rounds);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		// Accessor for the number of rounds played
+		public long getRounds(){
+			return rounds;
+		}
+
+		// Accessors for the share of rounds won outright, tied for best hand and lost
+		public double getWinRate(){
+			return (double) wins / rounds;
+		}
+
+		public double getTieRate(){
+			return (double) ties / rounds;
+		}
+
+		public double getLossRate(){
+			return (double) losses / rounds;
+		}
+
+		/**
+		 * Returns the estimated share of the pot won, from 0 to 1
+		 */
+		public double getEquity(){
+			return equity;
+		}
+
+		/**
+		 * Returns half the width of the 95% confidence interval around getEquity()
+		 */
+		public double getHalfWidth(){
+			return halfWidth;
+		}
+
+		// Accessor for the time the simulation took
+		public long getElapsedNanos(){
+			return elapsedNanos;
+		}
+
+		public String toString(){
+			return String.format("equity %.4f +/- %.4f (win %.4f, tie %.4f, loss %.4f) from %d rounds in %dms",
+					equity, halfWidth, getWinRate(), getTieRate(), getLossRate(), rounds, elapsedNanos / 1000000);
+		}
+	}
+
+	/**
+	 * Estimates the equity of a hand with the default limits
+	 */
+	public Result simulate(HandOfCards hand){
+		PlayingCard[] cards = new PlayingCard[HandOfCards.CARDS_HELD];
+		for (int i=0; i<cards.length; i++){
+			cards[i] = hand.getCard(i);
+		}
+		return simulate(cards);
+	}
+
+	/**
+	 * Estimates the equity of five cards with the default limits
+	 */
+	public Result simulate(PlayingCard[] cards){
+		return simulate(cards, DEFAULT_MAX_ROUNDS, DEFAULT_HALF_WIDTH, DEFAULT_TIME_LIMIT_NANOS);
+	}
+
+	/**
+	 * Estimates the equity of five cards
+	 * @param maxRounds Most rounds to play
+	 * @param targetHalfWidth Stops once the 95% confidence interval is no wider than this either side
+	 * @param timeLimitNanos Stops once this much time has passed
+	 */
+	public Result simulate(PlayingCard[] cards, long maxRounds, double targetHalfWidth, long timeLimitNanos){
+		long start = System.nanoTime();
+		long deadline = start + timeLimitNanos;
+		long heroCards = CardSet.of(cards);
+		if (CardSet.size(heroCards) != HandOfCards.CARDS_HELD){
+			throw new IllegalArgumentException("Need five different cards");
+		}
+
+		// The hero's cards are known, so the draw is the same every round
+		PlayingCard[] heroHand = cards.clone();
+		int heroMask = checkedMask(heroHand);
+		int heroDraws = Integer.bitCount(heroMask);
+
+		LongAdder wins = new LongAdder(), ties = new LongAdder(), losses = new LongAdder();
+		DoubleAdder equitySum = new DoubleAdder(), equitySquares = new DoubleAdder();
+		AtomicBoolean stop = new AtomicBoolean();
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		int taskCount = Runtime.getRuntime().availableProcessors();
+		for (int t=0; t<taskCount; t++){
+			SplittableRandom taskRandom;
+			synchronized (random){
+				taskRandom = random.split();
+			}
+			tasks.add(() -> {
+				DeckOfCards deck = new DeckOfCards(new FisherYatesShuffle(taskRandom));
+				PlayingCard[] order = new PlayingCard[PlayingCard.UNIQUE_CARD_COUNT];
+				PlayingCard[] hand = new PlayingCard[HandOfCards.CARDS_HELD];
+				int[] encodedHero = new int[HandOfCards.CARDS_HELD];
+				while (!stop.get()){
+					long batchWins = 0, batchTies = 0, batchLosses = 0;
+					double batchEquity = 0, batchSquares = 0;
+					for (int round=0; round<BATCH_SIZE; round++){
+						if ((round & DEADLINE_CHECK_MASK) == DEADLINE_CHECK_MASK && System.nanoTime() >= deadline){
+							break;
+						}
+						deck.shuffle();
+						deck.reset();
+						deck.deal(order.length, order);
+						int next = 0;
+
+						// Deal each opponent, skipping the hero's cards, and play their draw
+						int bestOpponent = 0, bestCount = 0;
+						for (int o=0; o<opponents; o++){
+							for (int i=0; i<hand.length; i++){
+								while (CardSet.contains(heroCards, order[next])){
+									next++;
+								}
+								hand[i] = order[next++];
+							}
+							int mask = checkedMask(hand);
+							for (int i=0; i<hand.length; i++){
+								if ((mask & (1 << i)) != 0){
+									while (CardSet.contains(heroCards, order[next])){
+										next++;
+									}
+									hand[i] = order[next++];
+								}
+							}
+							int value = HandEvaluator.evaluate(hand);
+							if (value > bestOpponent){
+								bestOpponent = value;
+								bestCount = 1;
+							}
+							else if (value == bestOpponent){
+								bestCount++;
+							}
+						}
+
+						// The hero draws from what is left
+						for (int i=0; i<encodedHero.length; i++){
+							encodedHero[i] = HandEvaluator.encode(heroHand[i]);
+						}
+						for (int i=0, drawn=0; drawn<heroDraws; i++){
+							if ((heroMask & (1 << i)) != 0){
+								while (CardSet.contains(heroCards, order[next])){
+									next++;
+								}
+								encodedHero[i] = HandEvaluator.encode(order[next++]);
+								drawn++;
+							}
+						}
+						int heroValue = HandEvaluator.evaluate(encodedHero[0], encodedHero[1], encodedHero[2],
+								encodedHero[3], encodedHero[4]);
+
+						double share;
+						if (heroValue > bestOpponent){
+							batchWins++;
+							share = 1;
+						}
+						else if (heroValue == bestOpponent){
+							batchTies++;
+							share = 1.0 / (bestCount + 1);
+						}
+						else {
+							batchLosses++;
+							share = 0;
+						}
+						batchEquity += share;
+						batchSquares += share * share;
+					}
+					wins.add(batchWins);
+					ties.add(batchTies);
+					losses.add(batchLosses);
+					equitySum.add(batchEquity);
+					equitySquares.add(batchSquares);
+
+					// Stop every task once the estimate is good enough or time is up
+					long rounds = wins.sum() + ties.sum() + losses.sum();
+					if (rounds >= maxRounds || System.nanoTime() >= deadline
+							|| (rounds >= MIN_ROUNDS && new Result(wins.sum(), ties.sum(), losses.sum(),
+									equitySum.sum(), equitySquares.sum(), 0).getHalfWidth() <= targetHalfWidth)){
+						stop.set(true);
+					}
+				}
+				return null;
+			});
+		}
+		ForkJoinPool.commonPool().invokeAll(tasks);
+
+		return new Result(wins.sum(), ties.sum(), losses.sum(), equitySum.sum(), equitySquares.sum(),
+				System.nanoTime() - start);
+	}
+
+	// Returns the policy's discard mask, checking it leaves enough cards for every player
+	private int checkedMask(PlayingCard[] hand){
+		int mask = policy.discardMask(hand);
+		if (Integer.bitCount(mask) > DrawStrategyTable.MAX_DISCARDS || (mask >>> HandOfCards.CARDS_HELD) != 0){
+			throw new IllegalStateException("Discard policy must discard at most "
+					+ DrawStrategyTable.MAX_DISCARDS + " cards, got mask " + mask);
+		}
+		return mask;
+	}
+
+	/**
+	 * Discard mask for KEEP_MATCHES, worked out without allocating
+	 */
+	private static int keepMatches(PlayingCard[] cards){
+		if (HandEvaluator.evaluate(cards) >= HandOfCards.STRAIGHT_DEFAULT){
+			return 0;
+		}
+		int unmatched = 0;
+		for (int i=0; i<cards.length; i++){
+			boolean matched = false;
+			for (int j=0; j<cards.length; j++){
+				if (i != j && cards[i].getGameValue() == cards[j].getGameValue()){
+					matched = true;
+				}
+			}
+			if (!matched){
+				unmatched |= 1 << i;
+			}
+		}
+
+		// Keep the highest unmatched cards until only three are thrown away
+		while (Integer.bitCount(unmatched) > DrawStrategyTable.MAX_DISCARDS){
+			int highest = -1;
+			for (int i=0; i<cards.length; i++){
+				if ((unmatched & (1 << i)) != 0 && (highest < 0 || cards[i].getGameValue() > cards[highest].getGameValue())){
+					highest = i;
+				}
+			}
+			unmatched &= ~(1 << highest);
+		}
+		return unmatched;
+	}
+
+	/*
+	 * Main method checks the simulator against the exact equity of a hand standing pat
+	 * heads up, then times simulations against several opponents drawing
+	 */
+	public static void main(String[] args) {
+
+		boolean errorFound = false;
+
+		// Pair of kings against one opponent, nobody drawing, can be worked out exactly
+		// by scoring every hand the opponent could hold
+		PlayingCard[] kings = {PlayingCard.of(13, PlayingCard.HEARTS), PlayingCard.of(13, PlayingCard.SPADES),
+				PlayingCard.of(9, PlayingCard.CLUBS), PlayingCard.of(5, PlayingCard.DIAMONDS), PlayingCard.of(2, PlayingCard.HEARTS)};
+		int kingsValue = HandEvaluator.evaluate(kings);
+		long unseen = CardSet.FULL_PACK & ~CardSet.of(kings);
+		int[] ordinals = new int[CardSet.size(unseen)];
+		int filled = 0;
+		for (long remaining = unseen; remaining != 0; remaining &= remaining - 1){
+			ordinals[filled] = CardSet.lowestIndex(remaining);
+			filled++;
+		}
+		double exactShares = 0;
+		long hands = 0;
+		for (int a=0; a<ordinals.length; a++){
+			for (int b=a+1; b<ordinals.length; b++){
+				for (int c=b+1; c<ordinals.length; c++){
+					for (int d=c+1; d<ordinals.length; d++){
+						for (int e=d+1; e<ordinals.length; e++){
+							int value = HandEvaluator.evaluate(HandEvaluator.encode(ordinals[a]), HandEvaluator.encode(ordinals[b]),
+									HandEvaluator.encode(ordinals[c]), HandEvaluator.encode(ordinals[d]), HandEvaluator.encode(ordinals[e]));
+							exactShares += kingsValue > value ? 1 : kingsValue == value ? 0.5 : 0;
+							hands++;
+						}
+					}
+				}
+			}
+		}
+		double exactEquity = exactShares / hands;
+		Result headsUp = new EquitySimulator(1, STAND_PAT, 30050).simulate(kings, 2000000, 0.001, 5000000000L);
+		System.out.println("Kings standing pat heads up: " + headsUp + ", EXACT: " + exactEquity);
+		if (Math.abs(headsUp.getEquity() - exactEquity) > 2 * headsUp.getHalfWidth() || headsUp.getHalfWidth() > 0.001){
+			System.out.println("####### Failed test above");
+			errorFound = true;
+		}
+
+		// A royal flush standing pat can not lose
+		PlayingCard[] royal = {PlayingCard.of(1, PlayingCard.SPADES), PlayingCard.of(13, PlayingCard.SPADES),
+				PlayingCard.of(12, PlayingCard.SPADES), PlayingCard.of(11, PlayingCard.SPADES), PlayingCard.of(10, PlayingCard.SPADES)};
+		Result royalResult = new EquitySimulator(MAX_OPPONENTS, KEEP_MATCHES).simulate(royal);
+		System.out.println("Royal flush against " + MAX_OPPONENTS + ": " + royalResult);
+		if (royalResult.getLossRate() != 0 || royalResult.getEquity() < 0.999){
+			System.out.println("####### Failed test above");
+			errorFound = true;
+		}
+
+		// Keeping matches should keep pairs and throw the lowest three of five odd cards
+		int pairMask = KEEP_MATCHES.discardMask(kings);
+		int highMask = KEEP_MATCHES.discardMask(new PlayingCard[] {PlayingCard.of(1, PlayingCard.HEARTS),
+				PlayingCard.of(3, PlayingCard.SPADES), PlayingCard.of(13, PlayingCard.CLUBS), PlayingCard.of(7, PlayingCard.HEARTS),
+				PlayingCard.of(5, PlayingCard.DIAMONDS)});
+		System.out.println("Keep matches masks " + pairMask + " and " + highMask + ", EXPECTED: 28 and 26");
+		if (pairMask != 28 || highMask != 26){
+			System.out.println("####### Failed test above");
+			errorFound = true;
+		}
+
+		// Time simulations with the default limits, which once the JIT compiler has warmed up
+		// should all fit in the 50ms a bot has to act
+		EquitySimulator simulator = new EquitySimulator(3, KEEP_MATCHES);
+		for (int i=0; i<20; i++){
+			simulator.simulate(kings);
+		}
+		long budgetNanos = 50000000L;
+		for (int i=0; i<5; i++){
+			Result drawing = simulator.simulate(kings);
+			System.out.println("Kings against 3 drawing: " + drawing);
+			if (drawing.getElapsedNanos() > budgetNanos){
+				System.out.println("####### Took longer than " + budgetNanos / 1000000 + "ms");
+				errorFound = true;
+			}
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,363 @@
+package poker;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many tables of five card draw at once and measures the hands played per second
+ * and the time taken by each phase of a hand.
+ *
+ * Each table plays its hands in a loop on a thread of its own. Where the JVM has virtual
+ * threads each table gets a virtual thread, so tens of thousands of tables run on one
+ * carrier thread per core. A table only ever waits on its deck's Semaphore, never inside a
+ * synchronized block, so a waiting table gives up its carrier rather than pinning it. On
+ * JVMs without virtual threads the tables take turns on one platform thread per core.
+ *
+ * Every table has its own deck and its own latency histograms, so the tables share nothing
+ * while they play and throughput grows with the cores. The histograms are added together
+ * once every table has finished.
+ */
+public class GameEngine {
+
+	/**
+	 * The phases of a hand, used to index latencies
+	 */
+	public static final int DEAL = 0;
+	public static final int DISCARD = 1;
+	public static final int SHOWDOWN = 2;
+	public static final int PHASE_COUNT = 3;
+	static final String[] PHASE_NAMES = {"deal", "discard", "showdown"};
+
+	private final Table[] tables;
+
+	/*
+	 * Constructor sets up the given number of tables, each seating the same number of
+	 * players who all discard by the given policy
+	 */
+	public GameEngine(int tableCount, int players, EquitySimulator.DiscardPolicy policy){
+		this(tableCount, players, policy, new SplittableRandom());
+	}
+
+	/*
+	 * Constructor with a seed, so every table deals the same hands each time
+	 */
+	public GameEngine(int tableCount, int players, EquitySimulator.DiscardPolicy policy, long seed){
+		this(tableCount, players, policy, new SplittableRandom(seed));
+	}
+
+	private GameEngine(int tableCount, int players, EquitySimulator.DiscardPolicy policy, SplittableRandom random){
+		if (tableCount < 1){
+			throw new IllegalArgumentException("Need at least one table, got " + tableCount);
+		}
+		tables = new Table[tableCount];
+		for (int i=0; i<tables.length; i++){
+			tables[i] = new Table(players, policy, new FisherYatesShuffle(random.split()));
+		}
+	}
+
+	/**
+	 * Times recorded into buckets by powers of two, so recording is a count in an array and
+	 * histograms add together cheaply. Percentiles are given as the top of their bucket, so
+	 * are at most twice the true time
+	 */
+	public static final class LatencyHistogram {
+
+		// Bucket i counts times from 2^(i-1) to 2^i - 1 nanoseconds, bucket 0 counts times of zero
+		private final long[] counts = new long[Long.SIZE];
+		private long count;
+		private long totalNanos;
+		private long maxNanos;
+
+		/**
+		 * Adds one time to the histogram
+		 */
+		void record(long nanos){
+			nanos = Math.max(0, nanos);
+			counts[Long.SIZE - Long.numberOfLeadingZeros(nanos)]++;
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		/**
+		 * Adds all the times in another histogram to this one
+		 */
+		void add(LatencyHistogram other){
+			for (int i=0; i<counts.length; i++){
+				counts[i] += other.counts[i];
+			}
+			count += other.count;
+			totalNanos += other.totalNanos;
+			maxNanos = Math.max(maxNanos, other.maxNanos);
+		}
+
+		/**
+		 * Empties the histogram
+		 */
+		void clear(){
+			for (int i=0; i<counts.length; i++){
+				counts[i] = 0;
+			}
+			count = 0;
+			totalNanos = 0;
+			maxNanos = 0;
+		}
+
+		// Accessor for the number of times recorded
+		public long getCount(){
+			return count;
+		}
+
+		// Accessor for the mean time
+		public double getMeanNanos(){
+			return count == 0 ? 0 : (double) totalNanos / count;
+		}
+
+		// Accessor for the longest time
+		public long getMaxNanos(){
+			return maxNanos;
+		}
+
+		/**
+		 * Returns the time at or under which the given share of times fall, from 0 to 1
+		 */
+		public long getPercentileNanos(double share){
+			long rank = Math.max(1, (long) Math.ceil(share * count));
+			long seen = 0;
+			for (int i=0; i<counts.length; i++){
+				seen += counts[i];
+				if (seen >= rank){
+					return i == 0 ? 0 : Math.min(maxNanos, (1L << i) - 1);
+				}
+			}
+			return maxNanos;
+		}
+
+		public String toString(){
+			return String.format("mean %.0fns, p50 %dns, p99 %dns, max %dns over %d",
+					getMeanNanos(), getPercentileNanos(0.5), getPercentileNanos(0.99), maxNanos, count);
+		}
+	}
+
+	/**
+	 * The hands played in a run of the engine and how long they took
+	 */
+	public static final class Result {
+
+		private final long hands;
+		private final long elapsedNanos;
+		private final LatencyHistogram[] latencies;
+		private final boolean virtualThreads;
+
+		Result(long hands, long elapsedNanos, LatencyHistogram[] latencies, boolean virtualThreads){
+			this.hands = hands;
+			this.elapsedNanos = elapsedNanos;
+			this.latencies = latencies;
+			this.virtualThreads = virtualThreads;
+		}
+
+		// Accessor for the number of hands played over all the tables
+		public long getHands(){
+			return hands;
+		}
+
+		// Accessor for the time the run took
+		public long getElapsedNanos(){
+			return elapsedNanos;
+		}
+
+		/**
+		 * Returns the hands played per second over all the tables
+		 */
+		public double getHandsPerSecond(){
+			return hands * 1e9 / elapsedNanos;
+		}
+
+		// Accessor for the times taken by one phase over all the tables, DEAL, DISCARD or SHOWDOWN
+		public LatencyHistogram getLatency(int phase){
+			return latencies[phase];
+		}
+
+		// Accessor for whether the tables were played on virtual threads
+		public boolean usedVirtualThreads(){
+			return virtualThreads;
+		}
+
+		public String toString(){
+			StringBuilder result = new StringBuilder(String.format("%d hands in %dms, %.0f hands/sec on %s threads",
+					hands, elapsedNanos / 1000000, getHandsPerSecond(), virtualThreads ? "virtual" : "platform"));
+			for (int phase=0; phase<PHASE_COUNT; phase++){
+				result.append("\n  ").append(PHASE_NAMES[phase]).append(": ").append(latencies[phase]);
+			}
+			return result.toString();
+		}
+	}
+
+	/**
+	 * Plays the given number of hands at every table, each table on its own thread, and
+	 * returns once all of them have finished
+	 * The tables' phase times are cleared first so the results cover only this run
+	 */
+	public Result run(int handsPerTable) throws InterruptedException{
+		long[] handsBefore = new long[tables.length];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(tables.length);
+		for (int t=0; t<tables.length; t++){
+			Table table = tables[t];
+			handsBefore[t] = table.getHandsPlayed();
+			table.clearLatencies();
+			tasks.add(() -> {
+				for (int hand=0; hand<handsPerTable; hand++){
+					table.playHand();
+				}
+				return null;
+			});
+		}
+
+		boolean virtualThreads = hasVirtualThreads();
+		ExecutorService executor = newTableExecutor();
+		long start = System.nanoTime();
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)){
+				future.get();
+			}
+		}
+		catch (ExecutionException e){
+			throw new IllegalStateException("A table stopped playing", e.getCause());
+		}
+		finally {
+			executor.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		long hands = 0;
+		LatencyHistogram[] latencies = new LatencyHistogram[PHASE_COUNT];
+		for (int phase=0; phase<PHASE_COUNT; phase++){
+			latencies[phase] = new LatencyHistogram();
+		}
+		for (int t=0; t<tables.length; t++){
+			hands += tables[t].getHandsPlayed() - handsBefore[t];
+			for (int phase=0; phase<PHASE_COUNT; phase++){
+				latencies[phase].add(tables[t].getLatency(phase));
+			}
+		}
+		return new Result(hands, elapsed, latencies, virtualThreads);
+	}
+
+	// Accessor for the number of tables
+	public int getTableCount(){
+		return tables.length;
+	}
+
+	// Accessor for a table
+	public Table getTable(int index){
+		return tables[index];
+	}
+
+	/**
+	 * Returns whether this JVM can run the tables on virtual threads
+	 */
+	public static boolean hasVirtualThreads(){
+		ExecutorService executor = newVirtualThreadExecutor();
+		if (executor == null){
+			return false;
+		}
+		executor.shutdown();
+		return true;
+	}
+
+	/**
+	 * Returns an executor starting a virtual thread for each table, or one platform thread
+	 * per core on JVMs without virtual threads
+	 */
+	private static ExecutorService newTableExecutor(){
+		ExecutorService executor = newVirtualThreadExecutor();
+		if (executor != null){
+			return executor;
+		}
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+			Thread thread = new Thread(runnable, "poker-table");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Looked up by reflection so the engine still builds and runs for Java 17, returns null
+	 * where virtual threads are missing or still a preview
+	 */
+	private static ExecutorService newVirtualThreadExecutor(){
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (ReflectiveOperationException | UnsupportedOperationException e){
+			return null;
+		}
+	}
+
+	/*
+	 * Main method plays hands at many seeded tables, checks every hand is counted and timed
+	 * and that a second engine with the same seed gives every seat the same pots, then
+	 * prints the throughput and phase times
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		int tableCount = 10000;
+		int players = 4;
+		int handsPerTable = 20;
+
+		GameEngine engine = new GameEngine(tableCount, players, EquitySimulator.KEEP_MATCHES, 30050);
+		GameEngine.Result warmUp = engine.run(handsPerTable);
+		GameEngine.Result result = engine.run(handsPerTable);
+		System.out.println(result);
+
+		long expectedHands = (long) tableCount * handsPerTable;
+		if (warmUp.getHands() != expectedHands || result.getHands() != expectedHands){
+			System.out.println("ERROR: " + result.getHands() + " HANDS PLAYED, EXPECTED " + expectedHands);
+			errorFound = true;
+		}
+		for (int phase=0; phase<PHASE_COUNT; phase++){
+			if (result.getLatency(phase).getCount() != expectedHands){
+				System.out.println("ERROR: " + PHASE_NAMES[phase] + " TIMED " + result.getLatency(phase).getCount()
+						+ " TIMES, EXPECTED " + expectedHands);
+				errorFound = true;
+			}
+		}
+
+		// The same seed should deal the same hands at every table, whatever order they ran in
+		GameEngine repeat = new GameEngine(tableCount, players, EquitySimulator.KEEP_MATCHES, 30050);
+		repeat.run(2 * handsPerTable);
+		for (int t=0; t<tableCount && !errorFound; t++){
+			long totalWins = 0;
+			for (int seat=0; seat<players; seat++){
+				totalWins += engine.getTable(t).getWins(seat);
+				if (engine.getTable(t).getWins(seat) != repeat.getTable(t).getWins(seat)){
+					System.out.println("ERROR: TABLE " + t + " SEAT " + seat + " WON " + repeat.getTable(t).getWins(seat)
+							+ " POTS, EXPECTED " + engine.getTable(t).getWins(seat));
+					errorFound = true;
+				}
+			}
+			if (totalWins < 2 * handsPerTable){
+				System.out.println("ERROR: TABLE " + t + " GAVE OUT " + totalWins + " POTS IN " + 2 * handsPerTable + " HANDS");
+				errorFound = true;
+			}
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -0,0 +1,698 @@
+package poker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append only log of every hand played by every seat, for audit. Each record is a fixed
+ * 24 bytes, little endian:
+ *
+ *   0  int   table id
+ *   4  int   hand number at the table
+ *   8  byte  seat
+ *   9  byte  mask of the dealt cards discarded
+ *  10  byte  ordinals of the five cards dealt, in the hand's order
+ *  15  byte  ordinals of up to three cards drawn, lowest first, NO_CARD where unused
+ *  18  byte  WON_FLAG if the seat won or shared the pot
+ *  19  byte  unused
+ *  20  int   game value of the final hand
+ *
+ * Records go into segment files named history-00000000.log and up in a directory, each
+ * mapped into memory at a fixed size. An append claims the next record with a compare and
+ * set and writes straight into the mapping, so threads append at once without a lock. A
+ * record is only claimed once its segment is mapped, so a segment that can not be mapped
+ * fails the append without leaving a claimed record that is never written. A game value
+ * is never zero, so a record is complete once its value is written, and the value is
+ * written last with release ordering so it is never seen before the rest.
+ *
+ * Appends are not on disk until committed. commit() forces to disk every record appended
+ * before it was called, and callers committing at the same time share a single force, so
+ * the cost of a disk write is spread over every record waiting for it. A log may also
+ * commit on a background thread at a fixed interval, so appending threads never wait on
+ * the disk. A background commit that fails is thrown by the next commit() or close(). A
+ * new log carries on from the end of any records already in the directory.
+ */
+public class HandHistoryLog implements AutoCloseable {
+
+	public static final int RECORD_SIZE = 24;
+	public static final byte WON_FLAG = 1;
+	public static final byte NO_CARD = (byte) 0xFF;
+
+	// Records in each segment file unless another size is given, 24MB a segment
+	public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+	private static final int VALUE_OFFSET = 20;
+	private static final VarHandle INT_VIEW = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final Path directory;
+	private final int recordsPerSegment;
+
+	// Number of records claimed, the sequence number of the next record
+	private final AtomicLong nextSequence;
+
+	// Every record below this sequence number is on disk
+	private volatile long committedSequence;
+
+	/*
+	 * The segment most appends write to. Older segments stay in the list until every record
+	 * in them is committed, in case a slow append is still writing to one
+	 */
+	private volatile Segment current;
+	private final List<Segment> segments = new ArrayList<Segment>();
+	private final ReentrantLock segmentLock = new ReentrantLock();
+
+	// Held by the thread forcing records to disk, the others wait for it and share its force
+	private final ReentrantLock commitLock = new ReentrantLock();
+
+	private final Thread committer;
+	private volatile boolean closed;
+
+	// Failure of the last background commit, not yet thrown to a caller
+	private final AtomicReference<RuntimeException> committerFailure = new AtomicReference<RuntimeException>();
+
+	/**
+	 * A mapped segment file
+	 */
+	private static final class Segment {
+
+		private final long index;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		private Segment(long index, FileChannel channel, MappedByteBuffer buffer){
+			this.index = index;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+	}
+
+	/*
+	 * Constructor opens a log in the given directory with the default segment size, committed
+	 * only when commit() is called
+	 */
+	public HandHistoryLog(Path directory) throws IOException{
+		this(directory, DEFAULT_RECORDS_PER_SEGMENT, 0);
+	}
+
+	/*
+	 * Constructor takes the number of records in each segment file, and how often to commit
+	 * on a background thread in milliseconds, or 0 to commit only when commit() is called
+	 */
+	public HandHistoryLog(Path directory, int recordsPerSegment, long commitIntervalMillis) throws IOException{
+		if (recordsPerSegment < 1 || recordsPerSegment > Integer.MAX_VALUE / RECORD_SIZE){
+			throw new IllegalArgumentException("Records per segment must be from 1 to "
+					+ Integer.MAX_VALUE / RECORD_SIZE + ", got " + recordsPerSegment);
+		}
+		this.directory = directory;
+		this.recordsPerSegment = recordsPerSegment;
+		Files.createDirectories(directory);
+
+		// Carry on after the last complete record of the last segment
+		long lastSegment = 0;
+		while (Files.exists(segmentPath(directory, lastSegment + 1))){
+			lastSegment++;
+		}
+		Path lastPath = segmentPath(directory, lastSegment);
+		if (Files.exists(lastPath) && Files.size(lastPath) != (long) recordsPerSegment * RECORD_SIZE){
+			throw new IllegalArgumentException("Log in " + directory + " has segments of " + Files.size(lastPath) / RECORD_SIZE
+					+ " records, not " + recordsPerSegment);
+		}
+		current = mapSegment(lastSegment);
+		segments.add(current);
+		int written = 0;
+		while (written < recordsPerSegment && isComplete(current.buffer, written)){
+			written++;
+		}
+		long start = lastSegment * recordsPerSegment + written;
+		nextSequence = new AtomicLong(start);
+		committedSequence = start;
+
+		if (commitIntervalMillis > 0){
+			committer = new Thread(() -> {
+				try {
+					while (!closed){
+						Thread.sleep(commitIntervalMillis);
+						try {
+							forceTo(nextSequence.get() - 1);
+						}
+						catch (RuntimeException e){
+							// No caller is waiting on this thread, so keep it for the next commit() or close()
+							committerFailure.set(e);
+						}
+					}
+				}
+				catch (InterruptedException e){
+					// Closing, the last commit is made by close()
+				}
+			}, "hand-history-commit");
+			committer.setDaemon(true);
+			committer.start();
+		}
+		else {
+			committer = null;
+		}
+	}
+
+	/**
+	 * Appends the record of one seat's hand and returns its sequence number, which can be
+	 * passed to commit(long) to wait until it is on disk
+	 * Throws an IllegalStateException, without claiming a record, if a new segment is
+	 * needed and can not be mapped
+	 * @param dealt The five cards dealt, packed as by HandEvaluator.pack or HandOfCards.snapshot()
+	 * @param finalCards The CardSet of the hand after the draw
+	 */
+	public long append(int tableId, int handNumber, int seat, int dealt, long finalCards, int gameValue, boolean won){
+		if (closed){
+			throw new IllegalStateException("Hand history log is closed");
+		}
+		if (gameValue <= 0){
+			throw new IllegalArgumentException("Game value must be above zero, got " + gameValue);
+		}
+		long sequence;
+		Segment segment;
+		do {
+			sequence = nextSequence.get();
+			segment = segmentFor(sequence / recordsPerSegment);
+		} while (!nextSequence.compareAndSet(sequence, sequence + 1));
+		MappedByteBuffer buffer = segment.buffer;
+		int offset = (int) (sequence % recordsPerSegment) * RECORD_SIZE;
+
+		buffer.putInt(offset, tableId);
+		buffer.putInt(offset + 4, handNumber);
+		buffer.put(offset + 8, (byte) seat);
+		buffer.put(offset + 18, won ? WON_FLAG : 0);
+		long drawn = finalCards;
+		int discardMask = 0;
+		for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+			int ordinal = (dealt >>> (6 * i)) & 0x3F;
+			buffer.put(offset + 10 + i, (byte) ordinal);
+			if (CardSet.contains(finalCards, ordinal)){
+				drawn = CardSet.remove(drawn, ordinal);
+			}
+			else {
+				discardMask |= 1 << i;
+			}
+		}
+		buffer.put(offset + 9, (byte) discardMask);
+		for (int i=0; i<DrawStrategyTable.MAX_DISCARDS; i++){
+			if (drawn != CardSet.EMPTY){
+				buffer.put(offset + 15 + i, (byte) CardSet.lowestIndex(drawn));
+				drawn &= drawn - 1;
+			}
+			else {
+				buffer.put(offset + 15 + i, NO_CARD);
+			}
+		}
+		INT_VIEW.setRelease(buffer, offset + VALUE_OFFSET, gameValue);
+		return sequence;
+	}
+
+	/**
+	 * Forces every record appended before the call to disk
+	 */
+	public void commit(){
+		commit(nextSequence.get() - 1);
+	}
+
+	/**
+	 * Returns once the record with the given sequence number and all before it are on disk.
+	 * If another thread is already forcing records this waits for it, and returns without a
+	 * write of its own if that force covered the record
+	 * Throws an IllegalStateException if a background commit has failed since the last call,
+	 * after forcing the records
+	 */
+	public void commit(long sequence){
+		forceTo(sequence);
+		throwCommitterFailure();
+	}
+
+	// Forces the record with the given sequence number and all before it to disk
+	private void forceTo(long sequence){
+		if (sequence < committedSequence){
+			return;
+		}
+		commitLock.lock();
+		try {
+			if (sequence < committedSequence){
+				return;
+			}
+			long from = committedSequence;
+			long to = nextSequence.get();
+
+			// Wait for appends claimed before now to finish writing, none of them block,
+			// then force only the range written in each segment
+			for (long index=from / recordsPerSegment; index<=(to - 1) / recordsPerSegment; index++){
+				MappedByteBuffer buffer = segmentFor(index).buffer;
+				int first = (int) (Math.max(from, index * recordsPerSegment) - index * recordsPerSegment);
+				int last = (int) (Math.min(to, (index + 1) * recordsPerSegment) - index * recordsPerSegment);
+				for (int record=first; record<last; record++){
+					while (!isComplete(buffer, record)){
+						Thread.onSpinWait();
+					}
+				}
+				buffer.force(first * RECORD_SIZE, (last - first) * RECORD_SIZE);
+			}
+			committedSequence = to;
+			releaseCommittedSegments(to / recordsPerSegment);
+		}
+		finally {
+			commitLock.unlock();
+		}
+	}
+
+	// Accessor for the number of records in the log
+	public long getRecordCount(){
+		return nextSequence.get();
+	}
+
+	// Accessor for the number of records known to be on disk
+	public long getCommittedCount(){
+		return committedSequence;
+	}
+
+	/**
+	 * Commits every record and closes the segment files
+	 */
+	@Override
+	public void close() throws IOException{
+		closed = true;
+		if (committer != null){
+			committer.interrupt();
+			try {
+				committer.join();
+			}
+			catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			commit();
+		}
+		finally {
+			segmentLock.lock();
+			try {
+				for (Segment segment : segments){
+					segment.channel.close();
+				}
+				segments.clear();
+			}
+			finally {
+				segmentLock.unlock();
+			}
+		}
+	}
+
+	// Throws the failure of a background commit once, if there has been one
+	private void throwCommitterFailure(){
+		RuntimeException failure = committerFailure.getAndSet(null);
+		if (failure != null){
+			throw new IllegalStateException("Background commit of the hand history failed", failure);
+		}
+	}
+
+	/**
+	 * Returns the segment with the given index, mapping it first if it is new
+	 */
+	private Segment segmentFor(long index){
+		Segment segment = current;
+		if (segment.index == index){
+			return segment;
+		}
+		segmentLock.lock();
+		try {
+			for (Segment existing : segments){
+				if (existing.index == index){
+					return existing;
+				}
+			}
+			while (current.index < index){
+				current = mapSegment(current.index + 1);
+				segments.add(current);
+			}
+			return current;
+		}
+		catch (IOException e){
+			throw new IllegalStateException("Could not map hand history segment " + index, e);
+		}
+		finally {
+			segmentLock.unlock();
+		}
+	}
+
+	// Maps a segment file at its full size, creating it if needed
+	private Segment mapSegment(long index) throws IOException{
+		FileChannel channel = FileChannel.open(segmentPath(directory, index),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return new Segment(index, channel, buffer);
+		}
+		catch (IOException | RuntimeException e){
+			channel.close();
+			throw e;
+		}
+	}
+
+	// Closes segments before the given index, every record in them is on disk
+	private void releaseCommittedSegments(long firstNeeded){
+		segmentLock.lock();
+		try {
+			for (int i=segments.size() - 1; i>=0; i--){
+				Segment segment = segments.get(i);
+				if (segment.index < firstNeeded && segment != current){
+					segments.remove(i);
+					segment.channel.close();
+				}
+			}
+		}
+		catch (IOException e){
+			throw new IllegalStateException("Could not close hand history segment", e);
+		}
+		finally {
+			segmentLock.unlock();
+		}
+	}
+
+	// Returns whether the record at a position in a segment has been fully written
+	private static boolean isComplete(MappedByteBuffer buffer, int record){
+		return (int) INT_VIEW.getAcquire(buffer, record * RECORD_SIZE + VALUE_OFFSET) != 0;
+	}
+
+	// Returns the path of a segment file
+	private static Path segmentPath(Path directory, long index){
+		return directory.resolve(String.format("history-%08d.log", index));
+	}
+
+	/**
+	 * Reads the records of a log in order, one at a time into the reader's own fields so
+	 * scanning allocates nothing per record. Each segment is read up to its first record
+	 * not fully written, so a record torn by a crash ends its segment
+	 */
+	public static final class Reader implements AutoCloseable {
+
+		private final Path directory;
+		private long segmentIndex = -1;
+		private FileChannel channel;
+		private MappedByteBuffer buffer;
+		private int offset;
+
+		/*
+		 * Constructor opens the log in the given directory, before its first record
+		 */
+		public Reader(Path directory){
+			this.directory = directory;
+		}
+
+		/**
+		 * Moves to the next record, returning false when there are no more
+		 */
+		public boolean next() throws IOException{
+			if (buffer != null){
+				offset += RECORD_SIZE;
+			}
+			while (buffer == null || offset + RECORD_SIZE > buffer.capacity()
+					|| buffer.getInt(offset + VALUE_OFFSET) == 0){
+				if (!openSegment(segmentIndex + 1)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// Maps the next segment for reading, false if it does not exist
+		private boolean openSegment(long index) throws IOException{
+			Path path = segmentPath(directory, index);
+			if (!Files.exists(path)){
+				return false;
+			}
+			close();
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			segmentIndex = index;
+			offset = 0;
+			return true;
+		}
+
+		// Accessors for the fields of the current record
+		public int getTableId(){
+			return buffer.getInt(offset);
+		}
+
+		public int getHandNumber(){
+			return buffer.getInt(offset + 4);
+		}
+
+		public int getSeat(){
+			return buffer.get(offset + 8);
+		}
+
+		public int getDiscardMask(){
+			return buffer.get(offset + 9);
+		}
+
+		public int getGameValue(){
+			return buffer.getInt(offset + VALUE_OFFSET);
+		}
+
+		public boolean isWinner(){
+			return (buffer.get(offset + 18) & WON_FLAG) != 0;
+		}
+
+		/**
+		 * Returns the card dealt at the given position
+		 */
+		public PlayingCard getDealtCard(int position){
+			return PlayingCard.fromOrdinal(buffer.get(offset + 10 + position));
+		}
+
+		/**
+		 * Returns the given card drawn, lowest ordinal first, or null if fewer were drawn
+		 */
+		public PlayingCard getDrawnCard(int draw){
+			byte ordinal = buffer.get(offset + 15 + draw);
+			return ordinal == NO_CARD ? null : PlayingCard.fromOrdinal(ordinal);
+		}
+
+		/**
+		 * Returns the five cards of the final hand packed as by HandEvaluator.pack, the kept
+		 * cards in the positions they were dealt and the drawn cards in the discarded positions
+		 */
+		public int getFinalHand(){
+			int packed = 0;
+			int mask = getDiscardMask();
+			int draw = 0;
+			for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+				int ordinal = (mask & (1 << i)) != 0 ? buffer.get(offset + 15 + draw++) : buffer.get(offset + 10 + i);
+				packed |= ordinal << (6 * i);
+			}
+			return packed;
+		}
+
+		/**
+		 * Closes the current segment file
+		 */
+		@Override
+		public void close() throws IOException{
+			if (channel != null){
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+
+	/*
+	 * Main method appends hands from several threads into small segments, checks a reader
+	 * gets every record back once and complete, that a reopened log carries on where the
+	 * last one stopped, and times writing and scanning
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		boolean errorFound = false;
+		Path directory = Files.createTempDirectory("hand-history");
+
+		// Several threads append seeded hands, committing in groups as they go
+		int threads = 4;
+		int handsPerThread = 250000;
+		long start = System.nanoTime();
+		try (HandHistoryLog log = new HandHistoryLog(directory, 100000, 5)){
+			Thread[] writers = new Thread[threads];
+			for (int t=0; t<threads; t++){
+				int tableId = t;
+				writers[t] = new Thread(() -> {
+					DeckOfCards deck = new UnsynchronizedDeckOfCards(FisherYatesShuffle.seeded(tableId));
+					PlayingCard[] dealtCards = new PlayingCard[HandOfCards.CARDS_HELD];
+					try {
+						for (int h=0; h<handsPerThread; h++){
+							deck.shuffle();
+							deck.reset();
+							HandOfCards hand = new HandOfCards(deck);
+							int dealt = hand.snapshot();
+							for (int i=0; i<dealtCards.length; i++){
+								dealtCards[i] = hand.getCard(i);
+							}
+
+							// Draw for the first few dealt cards, wherever sorting has moved them
+							for (int draw=0; draw<h % 4; draw++){
+								for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+									if (hand.getCard(i) == dealtCards[draw]){
+										hand.replaceCardFromDeck(i);
+										break;
+									}
+								}
+							}
+							long sequence = log.append(tableId, h, h % Table.MAX_PLAYERS, dealt, hand.getCardSet(),
+									hand.getGameValue(), h % 3 == 0);
+							if (h % 10000 == 0){
+								log.commit(sequence);
+							}
+						}
+					}
+					catch (InterruptedException e){
+						Thread.currentThread().interrupt();
+					}
+				});
+				writers[t].start();
+			}
+			for (int t=0; t<threads; t++){
+				writers[t].join();
+			}
+		}
+		long written = System.nanoTime() - start;
+
+		// Scan every record back and check it against a hand rebuilt from the cards
+		start = System.nanoTime();
+		long records = 0;
+		long[] nextHand = new long[threads];
+		PlayingCard[] finalCards = new PlayingCard[HandOfCards.CARDS_HELD];
+		try (Reader reader = new Reader(directory)){
+			while (reader.next() && !errorFound){
+				records++;
+				int tableId = reader.getTableId();
+				int handNumber = reader.getHandNumber();
+				int packed = reader.getFinalHand();
+				for (int i=0; i<finalCards.length; i++){
+					finalCards[i] = PlayingCard.fromOrdinal((packed >>> (6 * i)) & 0x3F);
+				}
+				if (tableId < 0 || tableId >= threads || handNumber != nextHand[tableId]
+						|| reader.getSeat() != handNumber % Table.MAX_PLAYERS
+						|| Integer.bitCount(reader.getDiscardMask()) != handNumber % 4
+						|| reader.isWinner() != (handNumber % 3 == 0)
+						|| CardSet.size(CardSet.of(finalCards)) != HandOfCards.CARDS_HELD
+						|| HandEvaluator.evaluate(finalCards) != reader.getGameValue()){
+					System.out.println("ERROR: RECORD " + records + " WRONG, TABLE " + tableId + " HAND " + handNumber
+							+ " VALUE " + reader.getGameValue());
+					errorFound = true;
+				}
+				else {
+					nextHand[tableId]++;
+				}
+			}
+		}
+		long checked = System.nanoTime() - start;
+
+		// Time a plain scan, best of a few
+		long scanned = Long.MAX_VALUE;
+		long valueTotal = 0;
+		for (int run=0; run<5; run++){
+			start = System.nanoTime();
+			try (Reader reader = new Reader(directory)){
+				while (reader.next()){
+					valueTotal += reader.getGameValue();
+				}
+			}
+			scanned = Math.min(scanned, System.nanoTime() - start);
+		}
+		System.out.println(records + " records written in " + written/1000000 + "ms, checked in " + checked/1000000
+				+ "ms, scanned in " + scanned/1000000 + "ms, " + records * 60000L / Math.max(1, scanned)
+				+ " million a minute (value total " + valueTotal + ")");
+		if (records != (long) threads * handsPerThread){
+			System.out.println("ERROR: READ " + records + " RECORDS, EXPECTED " + (long) threads * handsPerThread);
+			errorFound = true;
+		}
+
+		// A reopened log should carry on after the last record
+		try (HandHistoryLog log = new HandHistoryLog(directory, 100000, 0)){
+			if (log.getRecordCount() != records){
+				System.out.println("ERROR: REOPENED LOG STARTS AT " + log.getRecordCount() + ", EXPECTED " + records);
+				errorFound = true;
+			}
+			log.append(threads, 0, 0, 0, CardSet.EMPTY, HandOfCards.HIGH_HAND_DEFAULT, false);
+		}
+		long reread = 0;
+		try (Reader reader = new Reader(directory)){
+			while (reader.next()){
+				reread++;
+			}
+		}
+		if (reread != records + 1){
+			System.out.println("ERROR: READ " + reread + " RECORDS AFTER REOPENING, EXPECTED " + (records + 1));
+			errorFound = true;
+		}
+
+		try (Stream<Path> files = Files.list(directory)){
+			for (Path file : (Iterable<Path>) files::iterator){
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+
+		// A segment that can not be mapped should fail the append without claiming a record,
+		// so commits and closing still finish. The directory is removed to make mapping fail
+		Path lostDirectory = Files.createTempDirectory("hand-history-lost");
+		HandHistoryLog lostLog = new HandHistoryLog(lostDirectory, 4, 0);
+		for (int h=0; h<4; h++){
+			lostLog.append(0, h, 0, 0, CardSet.EMPTY, HandOfCards.HIGH_HAND_DEFAULT, false);
+		}
+		Files.delete(segmentPath(lostDirectory, 0));
+		Files.delete(lostDirectory);
+		try {
+			lostLog.append(0, 4, 0, 0, CardSet.EMPTY, HandOfCards.HIGH_HAND_DEFAULT, false);
+			System.out.println("ERROR: APPENDED TO A SEGMENT THAT COULD NOT BE MAPPED");
+			errorFound = true;
+		}
+		catch (IllegalStateException e){
+		}
+		Thread closer = new Thread(() -> {
+			try {
+				lostLog.commit();
+				lostLog.close();
+			}
+			catch (IOException e){
+				throw new UncheckedIOException(e);
+			}
+		});
+		closer.setDaemon(true);
+		closer.start();
+		closer.join(10000);
+		if (closer.isAlive() || lostLog.getRecordCount() != 4 || lostLog.getCommittedCount() != 4){
+			System.out.println("ERROR: LOG WITH AN UNMAPPED SEGMENT HAS " + lostLog.getRecordCount() + " RECORDS, "
+					+ lostLog.getCommittedCount() + " COMMITTED" + (closer.isAlive() ? " AND DID NOT CLOSE" : ""));
+			errorFound = true;
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
@@ -1,5 +1,9 @@
 package poker;
 
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
 public class HandOfCards {
 	
 	/*
@@ -21,19 +25,70 @@ public class HandOfCards {
 	 */
 	public static final int CARDS_HELD = 5;
 	private PlayingCard[] cardArray;
-	private DeckOfCards deck;
+	private Deck deck;
+	
+	/*
+	 * Classification of the hand, worked out once in classify() whenever the cards change
+	 * so the hand checks below do not need to go through the cards again.
+	 * rankCounts is indexed by game value, suitCounts in the same order as PlayingCard.SUITS
+	 * and rankMask has bit n set for each game value n held, plus bit 1 for an ace played low
+	 */
+	private int[] rankCounts = new int[15];
+	private int[] suitCounts = new int[PlayingCard.SUITS.length];
+	private int rankMask;
+	private int gameValue;
+	private int handTypeDefault;
+	private boolean bustedFlush, brokenStraight;
 	
 	/*
 	 * Constructor takes in deck, initializes card array and then fills in with 5
-	 * cards dealt from deck
+	 * cards dealt from deck in one block
 	 */
-	public HandOfCards(DeckOfCards deck) throws InterruptedException {
+	public HandOfCards(Deck deck) throws InterruptedException {
 		this.deck = deck;
 		cardArray = new PlayingCard[CARDS_HELD];
-		for (int i=0; i<CARDS_HELD; i++){
-			cardArray[i] = this.deck.dealNext();
+		if (!this.deck.deal(CARDS_HELD, cardArray)){
+			throw new IllegalStateException("Not enough cards left in the deck for a hand");
 		}
 		sort();
+		classify();
+	}
+	
+	/*
+	 * Constructor takes in deck and 5 cards already dealt from it, eg. by Deck.dealRound
+	 * Replaced cards are returned to and dealt from the deck
+	 * Throws an IllegalArgumentException unless the cards are five different cards
+	 */
+	public HandOfCards(Deck deck, PlayingCard[] dealtCards) {
+		long cards = CardSet.EMPTY;
+		for (int i=0; i<dealtCards.length && dealtCards[i] != null; i++){
+			cards = CardSet.add(cards, dealtCards[i]);
+		}
+		if (dealtCards.length != CARDS_HELD || CardSet.size(cards) != CARDS_HELD){
+			throw new IllegalArgumentException("Need " + CARDS_HELD + " different cards for a hand, got "
+					+ Arrays.toString(dealtCards));
+		}
+		this.deck = deck;
+		cardArray = dealtCards.clone();
+		sort();
+		classify();
+	}
+	
+	/**
+	 * Deals a hand to each of the given number of players, one card to each in turn
+	 * with the deck synchronized once for the whole table
+	 * Returns null if there are not enough cards left in the deck
+	 */
+	public static HandOfCards[] dealTable(Deck deck, int players) throws InterruptedException {
+		PlayingCard[][] dealtHands = deck.dealRound(players);
+		if (dealtHands == null){
+			return null;
+		}
+		HandOfCards[] hands = new HandOfCards[players];
+		for (int i=0; i<players; i++){
+			hands[i] = new HandOfCards(deck, dealtHands[i]);
+		}
+		return hands;
 	}
 	
 	/**
@@ -56,125 +111,172 @@ public class HandOfCards {
 	}
 	
 	/**
-	 * Returns a string of all the cards in the hand, along with their game value, separated by spaces
+	 * Counts the ranks and suits of the sorted cards in a single pass and works out the
+	 * game value and hand type. Must be called whenever the cards in the hand change,
+	 * apart from single cards replaced through replaceCard()
 	 */
-	public String toString(){
-		String output = "";
+	private void classify(){
+		for (int i=0; i<rankCounts.length; i++){
+			rankCounts[i] = 0;
+		}
+		for (int i=0; i<suitCounts.length; i++){
+			suitCounts[i] = 0;
+		}
+		rankMask = 0;
+		
 		for (int i=0; i<cardArray.length; i++){
-			output += cardArray[i] +"(" + cardArray[i].getGameValue() + ")" + " ";
+			addToCounts(cardArray[i]);
 		}
-		return output;
+		classifyFromCounts();
 	}
 	
 	/**
-	 * Checks whether cards are in sequential order ie. they all decrement in gameValue by 1 as we 
-	 * go along the sorted array.
-	 * This saves a lot of code repeat in our public boolean hand checks below
-	 * 
-	 * Fixed to include Ace low sequences 
+	 * Works out the game value and hand type from the counts and the sorted cards.
+	 * Only looks at five cards and a few counts, so costs the same whatever changed
 	 */
-	private boolean hasSequentialOrder(){
-		boolean sequentialCards = true;
+	private void classifyFromCounts(){
+		gameValue = HandEvaluator.evaluate(cardArray);
 		
-		// Check for decrementing gameValues along the array
-		for (int i=1; i<cardArray.length; i++){
-			if (cardArray[i].getGameValue() != cardArray[i-1].getGameValue()-1){
-				sequentialCards = false;
+		// Every value is its hand type default plus less than HIGH_HAND_DEFAULT
+		handTypeDefault = gameValue - gameValue % HIGH_HAND_DEFAULT;
+		
+		int mostOfOneSuit = 0;
+		for (int i=0; i<suitCounts.length; i++){
+			mostOfOneSuit = Math.max(mostOfOneSuit, suitCounts[i]);
+		}
+		bustedFlush = mostOfOneSuit == cardArray.length-1;
+		
+		// Four different ranks within five in a row, ace high or low, are one card off a straight
+		brokenStraight = false;
+		if (handTypeDefault != STRAIGHT_DEFAULT){
+			for (int lowValue=1; lowValue<=10; lowValue++){
+				if (Integer.bitCount(rankMask & (0x1F << lowValue)) >= cardArray.length-1){
+					brokenStraight = true;
+					break;
+				}
+			}
+		}
+	}
+	
+	// Adds a card to the rank and suit counts
+	private void addToCounts(PlayingCard card){
+		int cardValue = card.getGameValue();
+		rankCounts[cardValue]++;
+		suitCounts[CardSet.suitIndex(card.getSuit())]++;
+		rankMask |= 1 << cardValue;
+		
+		// An ace can also be played low in a straight
+		if (cardValue == 14){
+			rankMask |= 1 << 1;
+		}
+	}
+	
+	// Takes a card out of the rank and suit counts
+	private void removeFromCounts(PlayingCard card){
+		int cardValue = card.getGameValue();
+		rankCounts[cardValue]--;
+		suitCounts[CardSet.suitIndex(card.getSuit())]--;
+		if (rankCounts[cardValue] == 0){
+			rankMask &= ~(1 << cardValue);
+			if (cardValue == 14){
+				rankMask &= ~(1 << 1);
 			}
 		}
+	}
+	
+	/**
+	 * Replaces the card at a position with another, updating the counts for just the two
+	 * cards and moving the new card to its place in the order with one insertion step.
+	 * The new card ends up where a stable sort of the hand would put it
+	 */
+	private void replaceCard(int index, PlayingCard newCard){
+		removeFromCounts(cardArray[index]);
+		addToCounts(newCard);
 		
-		// If we don't have sequential cards by game value, we check for an ace low sequence
-		if (!sequentialCards){
-			sequentialCards = hasAceLowSequence();
+		int position = index;
+		while (position > 0 && cardArray[position-1].getGameValue() < newCard.getGameValue()){
+			cardArray[position] = cardArray[position-1];
+			position--;
+		}
+		while (position < cardArray.length-1 && cardArray[position+1].getGameValue() > newCard.getGameValue()){
+			cardArray[position] = cardArray[position+1];
+			position++;
 		}
+		cardArray[position] = newCard;
 		
-		return sequentialCards;
+		classifyFromCounts();
 	}
 	
 	/**
-	 * Checks if there is an ace low sequence of cards based on face value
-	 * ie. cardArray contains A,5,4,3,2 of any suit
+	 * Returns a string of all the cards in the hand, along with their game value, separated by spaces
 	 */
-	private boolean hasAceLowSequence() {
-		boolean aceLowSequence = true;
-		for(int i=1; i<cardArray.length; i++){
-			if (cardArray[i].getFaceValue()-1 != cardArray[(i+1)%cardArray.length].getFaceValue()){
-				aceLowSequence = false;
-			}
+	public String toString(){
+		StringBuilder output = new StringBuilder(cardArray.length * 8);
+		for (int i=0; i<cardArray.length; i++){
+			output.append(cardArray[i]).append('(').append(cardArray[i].getGameValue()).append(") ");
 		}
-		return aceLowSequence;
+		return output.toString();
 	}
 	
+	/**
+	 * Returns the CardSet of the cards in the hand
+	 */
+	public long getCardSet(){
+		return CardSet.of(cardArray);
+	}
 	
 	/**
-	 * Checks whether all cards in the array are the same suit
-	 * Again, saves code repeat in public boolean hand checks
+	 * Returns the card at a position in the hand, sorted from high game value to low
 	 */
-	private boolean hasAllSameSuit(){
-		boolean sameSuit = true;
-		for (int i=1; i<cardArray.length; i++){
-			if (cardArray[i-1].getSuit() != cardArray[i].getSuit()){
-				sameSuit = false;
-			}
+	public PlayingCard getCard(int index){
+		return cardArray[index];
+	}
+	
+	/**
+	 * Saves the cards in the hand as an int, six bits per card ordinal as packed by
+	 * HandEvaluator.pack, so the hand can be put back with restore() without allocating
+	 */
+	public int snapshot(){
+		return HandEvaluator.pack(cardArray);
+	}
+	
+	/**
+	 * Puts back the cards saved by snapshot(). The deck is not changed, so to branch a
+	 * simulation the deck should be restored from its own snapshot taken at the same time
+	 * Throws an IllegalArgumentException, leaving the hand as it was, if the snapshot is not
+	 * five different cards
+	 */
+	public void restore(int snapshot){
+		if (!HandEvaluator.isPackedHand(snapshot)){
+			throw new IllegalArgumentException("Not a snapshot of five different cards: " + Integer.toHexString(snapshot));
 		}
-		return sameSuit;
+		for (int i=0; i<cardArray.length; i++){
+			cardArray[i] = PlayingCard.fromOrdinal((snapshot >>> (6 * i)) & 0x3F);
+		}
+		sort();
+		classify();
 	}
 	
 	/**
-	 * Checks whether there is a segment of the card array, where the card game values all match,
-	 * with length equal EXACTLY to the number given as input
-	 * Saves code repeat in all gameValue matching boolean methods for Hand checking except for isTwoPair
-	 * @return False if no segment match of that length or segment of matching cards is longer than length 
-	 * specified. Returns true if segment where all card values match of exact input length exists
+	 * Checks if there is an ace low sequence of cards
+	 * ie. cardArray contains A,5,4,3,2 of any suit
 	 */
-	private boolean segmentMatch(int segmentLength){
-		// Assume false first
-		boolean segmentMatch = false;
-		
-		// Check all possible end points of segments for the cardArray
-		for (int i=segmentLength-1; i<cardArray.length; i++){
-			boolean thisSegmentMatches = true;
-			
-			// Check if previous cards in segment ending at i are equal in game value to cardArray[i]
-			for (int j=i-1; j>i-segmentLength; j--){
-				if (cardArray[j].getGameValue() != cardArray[i].getGameValue()){
-					thisSegmentMatches = false;
-					break;
-				}
-			}
-			
-			// If all cards in current segment match assume true for segmentMatch first
-			if (thisSegmentMatches){
-				segmentMatch = true;
-			}
-			
-			/*
-			 * If a potential match is found, then check if the card matches beyond the lower boundary
-			 * of the segment if they exist
-			 */
-			if (thisSegmentMatches && i-segmentLength>=0){
-				// If the card beyond the lower boundary also match, then the segment length is longer so we set false
-				if (cardArray[i].getGameValue() == cardArray[i-segmentLength].getGameValue()){
-					segmentMatch = false;
-				}
-			}
-			
-			/*
-			 * If a potential match is found check if cards match beyond the upper bound of the segment if they exist
-			 */
-			if (thisSegmentMatches && i<cardArray.length-1){
-				// If the card beyond the lower boundary also match, then the segment length is longer so we set false
-				if (cardArray[i].getGameValue() == cardArray[i+1].getGameValue()){
-					segmentMatch = false;
-				}
-			}
-			
-			// If the segment is a match, end the loop and return the boolean
-			if (segmentMatch){
-				break;
+	private boolean hasAceLowSequence() {
+		// Bits for the ace played low and each of two to five, and nothing else
+		return (rankMask & ~(1 << 14)) == 0x3E;
+	}
+	
+	/**
+	 * Returns the game value of the cards which appear exactly the given number of 
+	 * times in the hand, the highest if there are more than one. Returns 0 if none do
+	 */
+	private int matchedValue(int matchLength){
+		for (int cardValue=14; cardValue>=2; cardValue--){
+			if (rankCounts[cardValue] == matchLength){
+				return cardValue;
 			}
 		}
-		return segmentMatch;
+		return 0;
 	}
 	
 	/**
@@ -182,8 +284,7 @@ public class HandOfCards {
 	 * ie. A,K,Q,J,10 of same suit 
 	 */
 	public boolean isRoyalFlush() {
-		// Check first card in array is an ace & sequential order & same suit 
-		return cardArray[0].getGameValue() == 14 && hasSequentialOrder() && hasAllSameSuit() && !hasAceLowSequence();
+		return handTypeDefault == ROYAL_FLUSH_DEFAULT;
 	}
 	
 	/**
@@ -191,11 +292,7 @@ public class HandOfCards {
 	 * ie. Not royal flush, cards of same suit in sequential order
 	 */
 	public boolean isStraightFlush() {
-		
-		if (isRoyalFlush()){
-			return false;
-		}
-		return hasSequentialOrder() && hasAllSameSuit();
+		return handTypeDefault == STRAIGHT_FLUSH_DEFAULT;
 	}
 	
 	/**
@@ -203,8 +300,7 @@ public class HandOfCards {
 	 * ie. there are 4 cards of equal game value in the hand
 	 */
 	public boolean isFourOfAKind() {
-		
-		return segmentMatch(4);
+		return handTypeDefault == FOUR_OF_A_KIND_DEFAULT;
 	}
 	
 	/**
@@ -212,9 +308,7 @@ public class HandOfCards {
 	 * ie. Cards contain 3 of a kind and an additional pair
 	 */
 	public boolean isFullHouse() {
-		
-		return segmentMatch(3) && segmentMatch(2);
-		
+		return handTypeDefault == FULL_HOUSE_DEFAULT;
 	}
 	
 	/**
@@ -222,11 +316,7 @@ public class HandOfCards {
 	 * ie. Not straight flush or royal flush, cards are all of same suit
 	 */
 	public boolean isFlush() {
-		
-		if (isStraightFlush() || isRoyalFlush()) {
-			return false;
-		}
-		return hasAllSameSuit();
+		return handTypeDefault == FLUSH_DEFAULT;
 	}
 	
 	/**
@@ -234,11 +324,7 @@ public class HandOfCards {
 	 * ie. Not straight flush or royal flush, cards all in sequential order
 	 */
 	public boolean isStraight(){
-		
-		if (isStraightFlush() || isRoyalFlush()){
-			return false;
-		}
-		return hasSequentialOrder();
+		return handTypeDefault == STRAIGHT_DEFAULT;
 	}
 	
 	/**
@@ -246,11 +332,7 @@ public class HandOfCards {
 	 * ie. Not a full house, contains exactly 3 matching cards
 	 */
 	public boolean isThreeOfAKind() {
-		
-		if (isFullHouse()){
-			return false;
-		}
-		return segmentMatch(3);
+		return handTypeDefault == THREE_OF_A_KIND_DEFAULT;
 	}
 	
 	/**
@@ -258,28 +340,7 @@ public class HandOfCards {
 	 * ie. hand contains two separate pairs of matching cards
 	 */
 	public boolean isTwoPair(){
-		// Check all hands that could supersede this one 
-		if (isFullHouse() || isFourOfAKind()){
-			return false;
-		}
-		
-		// Check if there are two pairs of adjacent cards in sorted array with the same game value
-		boolean twoPair = false;
-		//First check if there is a pair in the first three entries
-		for (int i=1; i<cardArray.length-2; i++){
-			if (cardArray[i-1].getGameValue() == cardArray[i].getGameValue()){
-				/* 
-				 * If one pair exists, we check the rest of the array for another pair of 
-				 * adjacent cards with the same game value
-				 */
-				for (int j=i+2; j<cardArray.length; j++){
-					if (cardArray[j-1].getGameValue() == cardArray[j].getGameValue()){
-						twoPair = true;
-					}
-				}
-			}
-		}
-		return twoPair;
+		return handTypeDefault == TWO_PAIR_DEFAULT;
 	}
 	
 	/**
@@ -287,11 +348,7 @@ public class HandOfCards {
 	 * ie. Contains exactly one pair of matching cards
 	 */
 	public boolean isOnePair(){
-
-		if (isTwoPair() || isFullHouse()){
-			return false;
-		}
-		return segmentMatch(2);
+		return handTypeDefault == ONE_PAIR_DEFAULT;
 	}
 	
 	/**
@@ -299,13 +356,7 @@ public class HandOfCards {
 	 * ie. matches none of the other hand types
 	 */
 	public boolean isHighHand(){
-		if (isRoyalFlush() || isStraightFlush() || isFourOfAKind() || isFullHouse() || isFlush() 
-				|| isStraight() || isThreeOfAKind() || isTwoPair() || isOnePair()){
-			return false;
-		}
-		else{
-			return true;
-		}
+		return handTypeDefault == HIGH_HAND_DEFAULT;
 	}
 	
 	/**
@@ -313,126 +364,38 @@ public class HandOfCards {
 	 * Useful for testing
 	 */
 	private String handType(){
-		String handType ="";
-		if (isRoyalFlush()){
-			handType = "Royal Flush";
-		}
-		if(isStraightFlush()){
-			handType = "Straight Flush";
-		}
-		if(isFourOfAKind()){
-			handType = "Four Of A Kind";
-		}
-		if(isFullHouse()){
-			handType = "Full House";
-		}
-		if (isFlush()) {
-			handType = "Flush";
-		}
-		if (isStraight()){
-			handType = "Straight";
-		}
-		if (isThreeOfAKind()) {
-			handType = "Three Of A Kind";
-		}
-		if (isTwoPair()) {
-			handType = "Two Pair";
+		switch (handTypeDefault){
+			case ROYAL_FLUSH_DEFAULT:
+				return "Royal Flush";
+			case STRAIGHT_FLUSH_DEFAULT:
+				return "Straight Flush";
+			case FOUR_OF_A_KIND_DEFAULT:
+				return "Four Of A Kind";
+			case FULL_HOUSE_DEFAULT:
+				return "Full House";
+			case FLUSH_DEFAULT:
+				return "Flush";
+			case STRAIGHT_DEFAULT:
+				return "Straight";
+			case THREE_OF_A_KIND_DEFAULT:
+				return "Three Of A Kind";
+			case TWO_PAIR_DEFAULT:
+				return "Two Pair";
+			case ONE_PAIR_DEFAULT:
+				return "One Pair";
+			default:
+				return "High Hand";
 		}
-		if (isOnePair()) {
-			handType = "One Pair";
-		}
-		if (isHighHand()){
-			handType = "High Hand";
-		}
-		return handType;
 	}
 	
 	/**
 	 * Sets the hand to a specific array of cards for testing
+	 * Package private so the other classes of the game can test with chosen hands
 	 */
-	private void setHand(PlayingCard[] newHand){
+	void setHand(PlayingCard[] newHand){
 		cardArray = newHand;
 		sort();
-	}
-	
-	/**
-	 * Returns array of cards with segment of matching cards with length equal
-	 * exactly to the input parameter brought to the front.
-	 * Used below in calculating game values of hands 
-	 */
-	private PlayingCard[] segmentSort(int segmentLength){
-		
-		PlayingCard[] segmentSortedCards = new PlayingCard[CARDS_HELD];
-		// Assume segment match is false first
-		boolean segmentMatch = false;
-		
-		// Check all possible end points of segments for the cardArray
-		for (int i=segmentLength-1; i<cardArray.length; i++){
-			boolean thisSegmentMatches = true;
-			
-			// Check if previous cards in segment ending at i are equal in game value to cardArray[i]
-			for (int j=i-1; j>i-segmentLength; j--){
-				if (cardArray[j].getGameValue() != cardArray[i].getGameValue()){
-					thisSegmentMatches = false;
-					break;
-				}
-			}
-			
-			// If all cards in current segment match assume true for segmentMatch first
-			if (thisSegmentMatches){
-				segmentMatch = true;
-			}
-			
-			/*
-			 * If a potential match is found, then check if the card matches beyond the lower boundary
-			 * of the segment if they exist
-			 */
-			if (thisSegmentMatches && i-segmentLength>=0){
-				// If the card beyond the lower boundary also match, then the segment length is longer so we set false
-				if (cardArray[i].getGameValue() == cardArray[i-segmentLength].getGameValue()){
-					segmentMatch = false;
-				}
-			}
-			
-			/*
-			 * If a potential match is found check if cards match beyond the upper bound of the segment if they exist
-			 */
-			if (thisSegmentMatches && i<cardArray.length-1){
-				// If the card beyond the lower boundary also match, then the segment length is longer so we set false
-				if (cardArray[i].getGameValue() == cardArray[i+1].getGameValue()){
-					segmentMatch = false;
-				}
-			}
-			
-			/*
-			 * If the card is a match, fill the segmentSortedCards first with the matching 
-			 * segment, then with the remaining cards in order
-			 */
-			if (segmentMatch){
-				int filledArrayIndex = 0; 
-				
-				// First copy the cards which match into the array
-				for (int j = i-segmentLength+1; j<=i; j++){
-					segmentSortedCards[filledArrayIndex] = cardArray[j];
-					filledArrayIndex++;
-				}
-				
-				// Copy the cards of higher value into the array in order
-				for (int j=0; j<= i-segmentLength; j++){
-					segmentSortedCards[filledArrayIndex] = cardArray[j];
-					filledArrayIndex++;
-				}
-				
-				// Copy the cards of higher value into the array in order
-				for (int j = i+1; j < cardArray.length; j++){
-					PlayingCard temp = cardArray[j];
-					segmentSortedCards[filledArrayIndex] = temp;
-					filledArrayIndex++;
-				}
-				break;
-			}
-		}
-		return segmentSortedCards;
+		classify();
 	}
 	
 	/**
@@ -444,188 +407,28 @@ public class HandOfCards {
 	 * 
 	 * Uses the official rules of poker that different suits are neither better 
 	 * or worse than others. 
+	 * 
+	 * The value is looked up in the precomputed tables of HandEvaluator rather
+	 * than by checking each hand type in turn, once each time the cards change
 	 */
 	public int getGameValue(){
-		int gameValue =0;
-		int exponentialBase = 15;
-		/*
-		 * If hand is royal flush, set to royal flush default.
-		 * All royal flushes are same value across suits according to
-		 * official rules of poker.
-		 */
-		if (isRoyalFlush()){
-			gameValue = ROYAL_FLUSH_DEFAULT;
-		}
-		
-		/*
-		 * If straight Flush, add the game value of the highest card from the 
-		 * sorted array to the default value.
-		 * All suits same value according to poker rules
-		 */
-		if(isStraightFlush()){
-			gameValue = STRAIGHT_FLUSH_DEFAULT;
-			if (hasAceLowSequence()){
-				// Ace is low in straight so we add the high card's game Value
-				gameValue+= cardArray[1].getGameValue(); 
-			}
-			else{
-				// Add highest gamevalue in the array
-				gameValue += cardArray[0].getGameValue();
-			}
-		}
-		
-		/*
-		 * If four of a kind, add the game value of the 4 matching cards by 15^1
-		 * and add the value of the remaining card by 15^0 to the default value
-		 */
-		if(isFourOfAKind()){
-			gameValue = FOUR_OF_A_KIND_DEFAULT;
-			PlayingCard[] segmentSorted = segmentSort(4);
-			gameValue += segmentSorted[0].getGameValue() * exponentialBase;
-			gameValue += segmentSorted[4].getGameValue();
-		}
-		
-		/*
-		 * If full house add to the default the game value of the 3 matching cards 
-		 * There can never be two full houses with the same 3 matching cards so 
-		 * we ignore the 2 matched cards
-		 */
-		if(isFullHouse()){
-			gameValue = FULL_HOUSE_DEFAULT;
-			PlayingCard[] segmentSorted = segmentSort(3);
-			gameValue += segmentSorted[0].getGameValue();
-		}
-		
-		/*
-		 * For flush add to the default the values of the cards by their base 15 
-		 * exponentials according to their order in the sorted array
-		 */
-		if (isFlush()) {
-			gameValue = FLUSH_DEFAULT;
-			for (int i=0; i<cardArray.length; i++){
-				gameValue += cardArray[i].getGameValue() 
-						* Math.pow(exponentialBase, cardArray.length-i-1);
-			}
-		}
-		
-		/*
-		 * For simple straight, add the value of the largest card in the sorted 
-		 * array to the default value
-		 */
-		if (isStraight()){
-			gameValue = STRAIGHT_DEFAULT;
-			
-			if (hasAceLowSequence()){
-				// Ace is low in straight so we add the high card's game Value
-				gameValue+= cardArray[1].getGameValue(); 
-			}
-			else{
-				// Add highest gamevalue in the array
-				gameValue += cardArray[0].getGameValue();
-			}
-		}
-		/*
-		 * For three of a kind add to the default the value of the matching cards
-		 * It is impossible to have two hands with the same three matching cards
-		 * so we ignore the remaining two cards
-		 */
-		if (isThreeOfAKind()) {
-			gameValue = THREE_OF_A_KIND_DEFAULT;
-			PlayingCard[] segmentSorted = segmentSort(3);
-			gameValue += segmentSorted[0].getGameValue();
-		}
-		
-		/*
-		 * For two pair, add to the default the value of the higher pair by 15^2, the lower pair
-		 * by 15^1 and the remaining card by 15^0
-		 */
-		if (isTwoPair()) {
-			gameValue = TWO_PAIR_DEFAULT;
-			
-			// Ints to store game value of upper pair, lower pair and stray card respectively
-			int factorBase2 =0, factorBase1 =0, factorBase0 =0;
-			/*
-			 * 3 cases, stray unmatched card is at front, middle or end of sorted array
-			 */
-			if (cardArray[0].getGameValue() != cardArray[1].getGameValue()){
-				factorBase2 = cardArray[1].getGameValue();
-				factorBase1 = cardArray[3].getGameValue();
-				factorBase0 = cardArray[0].getGameValue();
-			}
-			else if (cardArray[2].getGameValue() != cardArray[3].getGameValue()){
-				factorBase2 = cardArray[0].getGameValue();
-				factorBase1 = cardArray[3].getGameValue();
-				factorBase0 = cardArray[2].getGameValue();
-			}
-			else if (cardArray[3].getGameValue() != cardArray[4].getGameValue()){
-				factorBase2 = cardArray[0].getGameValue();
-				factorBase1 = cardArray[2].getGameValue();
-				factorBase0 = cardArray[4].getGameValue();
-			}
-			
-			gameValue += factorBase2 * Math.pow(exponentialBase, 2);
-			gameValue += factorBase1 * Math.pow(exponentialBase, 1);
-			gameValue += factorBase0 * Math.pow(exponentialBase, 0);
-			
-		}
-		/*
-		 * For 1 pair, add to the default value the value of the pair by 15^3 plus
-		 * the remaining cards in order by 15^2, 15^1 and 15^ 0 respectively
-		 */
-		if (isOnePair()) {
-			gameValue = ONE_PAIR_DEFAULT;
-			PlayingCard[] segmentSorted = segmentSort(2);
-			for (int i=1; i<segmentSorted.length; i++){
-				gameValue += segmentSorted[i].getGameValue() 
-						* Math.pow(exponentialBase, segmentSorted.length-i-1);
-			}
-			
-		}
-		/*
-		 * For high hand, add to the default value the game values of the cards
-		 * multiplied in order by 15^4, 15^3, 15^2, 15^1 and 15^0 respectively
-		 */
-		if (isHighHand()){
-			gameValue = HIGH_HAND_DEFAULT;
-			for (int i=0; i<cardArray.length; i++){
-				gameValue += cardArray[i].getGameValue() 
-						* Math.pow(exponentialBase, cardArray.length-i-1);
-			}
-		}
-		
 		return gameValue;
 	}
 	
+	/**
+	 * Returns the same game value as getGameValue(), looked up in a memory mapped table
+	 * of all five card hands: the hand's CardSet gives a combinatorial index, which is
+	 * read as a short index into the table's array of distinct values
+	 */
+	public int getGameValue(HandRankTable rankTable){
+		return rankTable.rank(getCardSet());
+	}
+	
 	/**
 	 * Returns a boolean of whether the hand is considered a busted flush
 	 * ie. all cards are of the same suit but one
 	 */
 	public boolean isBustedFlush(){
-		boolean bustedFlush = false;
-		
-		//We check each card in the array and compare its suit to the next
-		for (int i=0; i<cardArray.length-1; i++){
-			
-
-			//If there is a single card that does not match the previous set true
-			if (cardArray[i+1].getSuit() != cardArray[i].getSuit()){
-				bustedFlush = true;
-				
-				//Then check the rest of the array matches card [i]
-				for (int j=i+2; j<cardArray.length; j++){
-					
-					//If another card doesn't match i, we don't have a busted flush
-					if (cardArray[i].getSuit() != cardArray[j].getSuit()){
-						bustedFlush = false;
-					}
-					
-				}
-				
-				//We only want to check for a single card difference so break after one check
-				break;
-			}
-		}
-		
 		return bustedFlush;
 	}
 	
@@ -634,192 +437,77 @@ public class HandOfCards {
 	 * ie. The cards are all in sequential order like a straight but one 
 	 */
 	public boolean isBrokenStraight(){
-		
-		if (isStraight()){
-			return false;
-		}
-		
-		boolean brokenStraight;
-	
-		brokenStraight = isBrokenStraightMissingLink() || isBrokenStraightSolidFour() || isBrokenStraightPairDisrupt();
-		
-	
 		return brokenStraight;
 	}
 	
 	/**
-	 * Returns a boolean to say whether the hand is a broken straight with 
-	 * a missing link card absent in the middle
-	 * 
+	 * Returns a boolean to indicate hand is a broken straight with a pair card
+	 * interrupting the sequence, ie. discarding one of the pair leaves the broken straight
 	 */
-	private boolean isBrokenStraightMissingLink(){
-
-		boolean brokenStraight = false;
-		int missingCount;
-		
-		// Check for missing link broken straight with odd card at start of array
-		brokenStraight = true;
-		missingCount = 0;
-		for (int i=1; i < cardArray.length-1; i++){
-			if (cardArray[i].getGameValue() != cardArray[i+1].getGameValue()+1){
-				if (cardArray[i].getGameValue() - cardArray[i+1].getGameValue() ==2){
-					missingCount++;
-					if (missingCount > 1){
-						brokenStraight = false;
-						break;
-					}
-				}
-				else {
-					brokenStraight = false;
-					break;
-				}
-			}
-		}
-		
-		// Check for missing link broken straight with odd card at end of array
-		if (!brokenStraight) {
-			brokenStraight = true;
-			missingCount = 0;
-			for (int i=0; i < cardArray.length-2; i++){
-				if (cardArray[i].getGameValue() != cardArray[i+1].getGameValue()+1){
-					if (cardArray[i].getGameValue() - cardArray[i+1].getGameValue() ==2){
-						missingCount++;
-						if (missingCount > 1){
-							brokenStraight = false;
-							break;
-						}
-					}
-					else {
-						brokenStraight = false;
-						break;
-					}
-				}
-			}
-		}
-		
-		// Check for missing link broken straight with ace low
-		if (!brokenStraight) {
-			brokenStraight = true;
-			missingCount = 0;
-			for (int i=2; i < cardArray.length; i++){
-				if (cardArray[i].getFaceValue() != cardArray[(i+1)%cardArray.length].getFaceValue()+1) {
-					
-					if (cardArray[i].getFaceValue() - cardArray[(i+1)%cardArray.length].getFaceValue() ==2){
-						missingCount++;
-						if (missingCount > 1){
-							brokenStraight = false;
-							break;
-						}
-					}
-					else {
-						brokenStraight = false;
-						break;
-					}
-				}
-			}
-		}
-		
-		return brokenStraight;
+	public boolean isBrokenStraightPairDisrupt(){
+		// A broken straight holds four different ranks, so with five cards one is paired
+		return brokenStraight && Integer.bitCount(rankMask & ~(1 << 1)) == cardArray.length-1;
 	}
 	
 	/**
-	 * Returns a boolean indicating whether the straight is a broken straight with 4 cards 
-	 * in sequence and one odd card
+	 * Returns how many ranks would complete a straight if the card at the position input
+	 * were discarded and one of them drawn. Only the odd card of a broken straight counts,
+	 * so if discarding any of several cards would leave one, the card is counted only if
+	 * it leaves the draw with the most ranks to complete it, then a solid four over a
+	 * missing link, then the highest straight
 	 */
-	private boolean isBrokenStraightSolidFour() {
-		
-		boolean brokenStraight = false;
-		
-		// Check for broken straight with stray card at beginning of array
-		if (cardArray[0].getGameValue() != cardArray[1].getGameValue()+1){
-			brokenStraight = true;
-			for (int i=1; i<cardArray.length-1; i++){
-				if (cardArray[i].getGameValue() != cardArray[i+1].getGameValue()+1){
-					brokenStraight = false;
-				}
-			}
-		}
-		
-		// Check for broken straight with stray card at end of array
-		if (!brokenStraight && cardArray[3].getGameValue() != cardArray[4].getGameValue()){
-			brokenStraight = true;
-			for (int i=0; i<cardArray.length-2; i++){
-				if (cardArray[i].getGameValue() != cardArray[i+1].getGameValue()+1){
-					brokenStraight = false;;
-				}
-			}
-			
+	private int straightOuts(int cardPosition){
+		int draw = straightDraw(cardArray[cardPosition].getGameValue());
+		if (draw == 0){
+			return 0;
 		}
-		
-		// Check for broken straight solid 4 with ace low
-		if (!brokenStraight && cardArray[1].getGameValue() != cardArray[2].getGameValue()+1 &&
-				cardArray[4].getFaceValue() == cardArray[0].getFaceValue()+1){
-			brokenStraight = true;
-			for (int i=2; i<cardArray.length-2; i++){
-				if (cardArray[i].getFaceValue() != cardArray[(i+1)%cardArray.length].getFaceValue()+1){
-					brokenStraight = false;
-				}
+		for (int i=0; i<cardArray.length; i++){
+			if (straightDraw(cardArray[i].getGameValue()) > draw){
+				return 0;
 			}
 		}
-		
-		return brokenStraight;
-		
+		return draw >>> 5;
 	}
 	
 	/**
-	 * Returns a boolean to indicate hand is a broken straight with a pair card
-	 * interrupting the sequence in the array
+	 * Works out the straight draw left by discarding a card of the given game value, from
+	 * the rank mask of the four cards kept, and returns it so that better draws are larger:
+	 * the number of ranks that complete it times 32, plus 16 for a solid four, plus the
+	 * lowest value of the highest straight it can make. Returns 0 unless the four cards
+	 * kept are all different ranks within five in a row, ace high or low
 	 */
-	public boolean isBrokenStraightPairDisrupt(){
-		
-		boolean brokenStraight = true;
-		int pairCount =0;
-		 
-		
-		// Go through the array and check if all cards are straight except for 1 pair
-		for (int i=0; i < cardArray.length-1; i++){
-			
-			if (cardArray[i].getGameValue() != cardArray[i+1].getGameValue()+1){
-				
-				if(cardArray[i].getGameValue() == cardArray[i+1].getGameValue()){
-					pairCount++;
-					if (pairCount > 1){
-						brokenStraight = false;
-						break;
-					}
-				}
-				else {
-					brokenStraight = false;
-					break;
-				}
+	private int straightDraw(int cardValue){
+		int keptMask = rankMask;
+		if (rankCounts[cardValue] == 1){
+			keptMask &= ~(1 << cardValue);
+			if (cardValue == 14){
+				keptMask &= ~(1 << 1);
 			}
 		}
 		
-		// Check for the ace low case 
-		if (!brokenStraight){
-			
-			brokenStraight = true;
-			
-			for (int i=1; i < cardArray.length; i++){
-				
-				if (cardArray[i].getFaceValue() != cardArray[(i+1)%cardArray.length].getFaceValue()+1){
-					
-					if(cardArray[i].getFaceValue() == cardArray[(i+1)%cardArray.length].getFaceValue()){
-						pairCount++;
-						if (pairCount > 1){
-							brokenStraight = false;
-							break;
-						}
-					}
-					else {
-						brokenStraight = false;
-						break;
-					}
-				}
+		// The ace is in the mask twice, but no run of five holds both
+		int keptRanks = Integer.bitCount(keptMask & ~(1 << 1));
+		if (keptRanks != cardArray.length-1){
+			return 0;
+		}
+		
+		// Each run of five holding all four kept ranks is missing one more
+		int outs = 0, highestLowValue = 0;
+		for (int lowValue=1; lowValue<=10; lowValue++){
+			if (Integer.bitCount(keptMask & (0x1F << lowValue)) == keptRanks){
+				outs++;
+				highestLowValue = lowValue;
 			}
 		}
+		if (outs == 0){
+			return 0;
+		}
 		
-		return brokenStraight;
+		boolean solidFour = false;
+		for (int lowValue=1; lowValue<=11; lowValue++){
+			solidFour |= Integer.bitCount(keptMask & (0xF << lowValue)) == keptRanks;
+		}
+		return (outs << 5) | (solidFour ? 16 : 0) | highestLowValue;
 	}
 	
 	
@@ -854,8 +542,7 @@ public class HandOfCards {
 		int discardProbability = 0;
 		
 		// Throwing away the pair has a small chance of getting the card to increase the hand to a 4 of a kind
-		PlayingCard[] segmentSorted = segmentSort(2);
-		if (cardArray[cardPosition].getGameValue() == segmentSorted[0].getGameValue()){
+		if (cardArray[cardPosition].getGameValue() == matchedValue(2)){
 			discardProbability += 100*1/(52 - cardArray.length);
 		}
 		
@@ -871,103 +558,11 @@ public class HandOfCards {
 		int discardProbability = 0;
 		
 		/*
-		 *  If a broken straight is in the flush, getting a card to complete the flush 
-		 *  has the possibility of making a straight flush
+		 *  If a broken straight is in the flush, getting a card of the flush's suit
+		 *  that completes the straight in place of the odd card makes a straight flush
 		 */
 		if (isBrokenStraight()){
-			
-			// Check our missing card is from either the front or back of sequence 
-			if (isBrokenStraightSolidFour()){
-				
-				// Check if the first card is the odd card and not ace low
-				if (cardArray[0].getGameValue() != cardArray[1].getGameValue()+1 
-						&& cardArray[4].getFaceValue() != cardArray[0].getFaceValue()+1) {
-					
-					/*
-					 * If the position is the odd card we have the probability of getting a front
-					 * or end to the sequence in the suit of our flush to improve 
-					 */
-					if (cardPosition == 0){
-						discardProbability += 100*2/(52-cardArray.length);
-					}
-				}
-				
-				// Check if the last card is the odd card and aces not low
-				else if (cardArray[3].getGameValue() != cardArray[4].getGameValue()+1
-							&& cardArray[4].getFaceValue() != cardArray[0].getFaceValue()+1){
-					
-					/*
-					 * If the position is the odd card we have the probability of getting a front
-					 * or end to the sequence in the suit of our flush to improve 
-					 */
-					if (cardPosition == 4){
-						if (cardArray[0].getGameValue() ==14){
-							/*
-							 * If the broken straight is ace high, only one card 
-							 * can upgrade it to straight flush
-							 */
-							discardProbability += 100*1/(52-cardArray.length);
-						}
-						else {
-							/*
-							 * Else there are two cards that could front or end our
-							 * broken flush to upgrade
-							 */
-							discardProbability += 100*2/(52-cardArray.length);
-						}
-					}
-				}
-				
-				//Ace must be low and the odd card is position 1
-				else {
-					if (cardPosition == 1) {
-
-						/*
-						 * There is only one card in the deck that can improve the hand
-						 * as ace is low
-						 */
-						discardProbability += 100*1/(52-cardArray.length);
-					}
-				}
-				
-			}
-			else if (isBrokenStraightMissingLink()){
-
-				// If the odd card is the top and not a broken ace low straight
-				if (cardArray[0].getGameValue() != cardArray[1].getGameValue()+1 
-						&& cardArray[0].getFaceValue() != cardArray[4].getFaceValue()-1){
-					if (cardPosition ==0){
-						/*
-						 * Only one card in the remaining deck can make it a higher hand of a
-						 * straight flush
-						 */
-						discardProbability += 100*1/(52-cardArray.length);
-					}
-				}
-				
-				// If the hand is an ace low broken straight, the odd card is in position 1
-				else if (cardArray[3].getGameValue() == cardArray[4].getGameValue() +1
-						&& cardArray[0].getFaceValue() == cardArray[4].getFaceValue()-1){
-					if (cardPosition == 1){
-						/*
-						 * Only one card in the remaining deck can make it a higher hand of a
-						 * straight flush
-						 */
-						discardProbability += 100*1/(52-cardArray.length);
-					}
-				}
-				
-				// Else the odd card is at the end of the array
-				else {
-					if (cardPosition == 4){
-						/*
-						 * Only one card in the remaining deck can make it a higher hand of a
-						 * straight flush
-						 */
-						discardProbability += 100*1/(52-cardArray.length);
-					}
-				}
-			}
+			discardProbability += 100*straightOuts(cardPosition)/(52-cardArray.length);
 		}
 		
 		return discardProbability;
@@ -1013,14 +608,13 @@ public class HandOfCards {
 	private int discardProbabilityThreeOfAKind(int cardPosition) {
 		
 		int discardProbability = 0;
-		PlayingCard[] segmentSorted = segmentSort(3);
 		
 		/*
 		 * For the two unmatched cards we add the probability that we get the 
 		 * remaining matched card for a four of a kind and that the two unmatched
 		 * match to make a full house
 		 */
-		if (segmentSorted[0].getGameValue() != cardArray[cardPosition].getGameValue()){
+		if (matchedValue(3) != cardArray[cardPosition].getGameValue()){
 			discardProbability += 100*1/(52-cardArray.length) + 100*3/(52-cardArray.length); 
 		}
 		
@@ -1065,8 +659,7 @@ public class HandOfCards {
 	private int discardProbabilityOnePair(int cardPosition) {
 		
 		int discardProbability = 0;
-
-		PlayingCard[] segmentSorted = segmentSort(2);
+		int pairValue = matchedValue(2);
 		
 		/*
 		 * If the card at that position is busting a flush, we add the chance that
@@ -1084,28 +677,15 @@ public class HandOfCards {
 		 */
 		if (isBrokenStraight()){
 			
-			if (cardArray[cardPosition].getGameValue() == segmentSorted[0].getGameValue()){
-				
-				// If the broken straight is ace high, only one card from each suit can make the straight
-				if (cardArray[0].getGameValue() == 14 && cardArray[4].getGameValue() != 2){
-					discardProbability += 100*4/(52-cardArray.length);
-				}
-				// If broken straight is ace low, only one card from each suit can make the straight
-				else if (cardArray[0].getFaceValue() == cardArray[4].getFaceValue()-1){
-					discardProbability += 100*4/(52-cardArray.length);
-				}
-				// Else there are 2 cards from each suit that could the front or end of the straight
-				else {
-					discardProbability += 100*8/(52-cardArray.length);
-				}
-			}
+			// Any suit of each rank that completes the straight will do
+			discardProbability += 100*4*straightOuts(cardPosition)/(52-cardArray.length);
 		}
 		
 		/*
 		 * For the unmatched cards we add the probability that they could match with 
 		 * either the other two unmatched cards or the pair 
 		 */
-		if (cardArray[cardPosition].getGameValue() != segmentSorted[0].getGameValue()){
+		if (cardArray[cardPosition].getGameValue() != pairValue){
 			discardProbability += 100*8/(52-cardArray.length);
 		}
 		
@@ -1148,37 +728,39 @@ public class HandOfCards {
 		
 		int discardProbability = 0;
 		
-		if (isRoyalFlush()){
-			// No chance of improving a royal flush hand
-			discardProbability = 0;
-		}
-		if (isStraightFlush()){
-			discardProbability = discardProbabilityStraightFlush(cardPosition);
-		}
-		if (isFourOfAKind()){
-			// No chance of improving a 4 of a kind hand
-			discardProbability = 0;
-		}
-		if (isFullHouse()){
-			discardProbability = discardProbabilityFullHouse(cardPosition);
-		}
-		if (isFlush()){
-			discardProbability = discardProbabilityFlush(cardPosition);
-		}
-		if (isStraight()){
-			discardProbability = discardProbabilityStraight(cardPosition);
-		}
-		if (isThreeOfAKind()){
-			discardProbability = discardProbabilityThreeOfAKind(cardPosition);
-		}
-		if (isTwoPair()){
-			discardProbability = discardProbabilityTwoPair(cardPosition);
-		}
-		if (isOnePair()){
-			discardProbability = discardProbabilityOnePair(cardPosition);
-		}
-		if (isHighHand()){
-			discardProbability = discardProbabilityHighHand(cardPosition);
+		switch (handTypeDefault){
+			case ROYAL_FLUSH_DEFAULT:
+				// No chance of improving a royal flush hand
+				discardProbability = 0;
+				break;
+			case STRAIGHT_FLUSH_DEFAULT:
+				discardProbability = discardProbabilityStraightFlush(cardPosition);
+				break;
+			case FOUR_OF_A_KIND_DEFAULT:
+				// No chance of improving a 4 of a kind hand
+				discardProbability = 0;
+				break;
+			case FULL_HOUSE_DEFAULT:
+				discardProbability = discardProbabilityFullHouse(cardPosition);
+				break;
+			case FLUSH_DEFAULT:
+				discardProbability = discardProbabilityFlush(cardPosition);
+				break;
+			case STRAIGHT_DEFAULT:
+				discardProbability = discardProbabilityStraight(cardPosition);
+				break;
+			case THREE_OF_A_KIND_DEFAULT:
+				discardProbability = discardProbabilityThreeOfAKind(cardPosition);
+				break;
+			case TWO_PAIR_DEFAULT:
+				discardProbability = discardProbabilityTwoPair(cardPosition);
+				break;
+			case ONE_PAIR_DEFAULT:
+				discardProbability = discardProbabilityOnePair(cardPosition);
+				break;
+			default:
+				discardProbability = discardProbabilityHighHand(cardPosition);
+				break;
 		}
 		
 		return discardProbability;
@@ -1191,8 +773,7 @@ public class HandOfCards {
 	public void replaceCardFromDeck(int index) throws InterruptedException{
 		if (index >= 0 && index < cardArray.length){
 			deck.returnCard(cardArray[index]);
-			cardArray[index] = deck.dealNext();
-			sort();
+			replaceCard(index, deck.dealNext());
 		}
 	}
 	
@@ -1747,6 +1328,198 @@ public class HandOfCards {
 		return testSuccess;
 	}
 	
+	/**
+	 * Tests dealing a whole table of hands from one block of the deck
+	 * @return true if every card dealt is in exactly one hand
+	 * @throws InterruptedException 
+	 */
+	private static boolean testDealTable() throws InterruptedException {
+		boolean testSuccess = true;
+		
+		System.out.println("----------test for dealTable() method---------");
+		
+		DeckOfCards testDeck = new DeckOfCards();
+		HandOfCards[] table = dealTable(testDeck, 6);
+		long cardsAtTable = CardSet.EMPTY;
+		for (int i=0; i<table.length; i++){
+			cardsAtTable |= table[i].getCardSet();
+		}
+		System.out.println(CardSet.size(cardsAtTable) + " different cards dealt to " + table.length + " players, EXPECTED: 30");
+		if (CardSet.size(cardsAtTable) != 30 || cardsAtTable != testDeck.getDealtCards()){
+			System.out.println("####### Failed test above");
+			testSuccess = false;
+		}
+		
+		// Only 22 cards are left, not enough for another 6 players
+		System.out.println("Second table dealt: " + (dealTable(testDeck, 6) != null) + ", EXPECTED: false");
+		if (dealTable(testDeck, 6) != null){
+			System.out.println("####### Failed test above");
+			testSuccess = false;
+		}
+		
+		// A hand should only be made from five different cards
+		PlayingCard[] dealt = table[0].cardArray;
+		PlayingCard[][] badHands = {Arrays.copyOf(dealt, CARDS_HELD + 1), Arrays.copyOf(dealt, CARDS_HELD - 1),
+				{dealt[0], dealt[1], dealt[2], dealt[3], null}, {dealt[0], dealt[1], dealt[2], dealt[3], dealt[0]}};
+		badHands[0][CARDS_HELD] = table[1].cardArray[0];
+		for (int i=0; i<badHands.length; i++){
+			try {
+				new HandOfCards(testDeck, badHands[i]);
+				System.out.println("####### Made a hand from " + Arrays.toString(badHands[i]));
+				testSuccess = false;
+			}
+			catch (IllegalArgumentException e){
+			}
+		}
+		return testSuccess;
+	}
+	
+	/**
+	 * Tests branching a hand and its deck from a snapshot
+	 * @return true if every branch draws the same card from the same position
+	 * @throws InterruptedException 
+	 */
+	private static boolean testSnapshot() throws InterruptedException {
+		boolean testSuccess = true;
+		
+		System.out.println("----------test for snapshot() and restore() methods---------");
+		
+		DeckOfCards testDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		HandOfCards testHand = new HandOfCards(testDeck);
+		int savedHand = testHand.snapshot();
+		DeckOfCards.Snapshot savedDeck = testDeck.snapshot();
+		String before = testHand.toString();
+		
+		testHand.replaceCardFromDeck(0);
+		testHand.replaceCardFromDeck(1);
+		String firstBranch = testHand.toString();
+		for (int branch=0; branch<3; branch++){
+			testHand.restore(savedHand);
+			testDeck.restore(savedDeck);
+			String restored = testHand.toString();
+			testHand.replaceCardFromDeck(0);
+			testHand.replaceCardFromDeck(1);
+			System.out.println(restored + "-> " + testHand.toString() + ", EXPECTED: " + before + "-> " + firstBranch);
+			if (!restored.equals(before) || !testHand.toString().equals(firstBranch)){
+				System.out.println("####### Failed test above");
+				testSuccess = false;
+			}
+		}
+		
+		// A snapshot with a repeated card, an ordinal past the pack or stray high bits should
+		// be rejected without changing the hand
+		String kept = testHand.toString();
+		int[] badSnapshots = {0, savedHand | (1 << 30), (savedHand & ~0x3F) | 52, (savedHand & ~0x3F) | ((savedHand >>> 6) & 0x3F)};
+		for (int i=0; i<badSnapshots.length; i++){
+			try {
+				testHand.restore(badSnapshots[i]);
+				System.out.println("####### Restored bad snapshot " + Integer.toHexString(badSnapshots[i]));
+				testSuccess = false;
+			}
+			catch (IllegalArgumentException e){
+				if (!testHand.toString().equals(kept)){
+					System.out.println("####### Hand changed by bad snapshot " + Integer.toHexString(badSnapshots[i]));
+					testSuccess = false;
+				}
+			}
+		}
+		return testSuccess;
+	}
+	
+	/**
+	 * Tests that replacing cards one at a time leaves the hand classified exactly as a hand
+	 * classified from scratch with the same cards, and still in order
+	 * @return true if every replacement matches
+	 * @throws InterruptedException 
+	 */
+	private static boolean testIncrementalReplace() throws InterruptedException {
+		boolean testSuccess = true;
+		
+		System.out.println("----------test for replaceCardFromDeck() reclassification---------");
+		
+		DeckOfCards testDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		HandOfCards testHand = new HandOfCards(testDeck);
+		PlayingCard[] cards = new PlayingCard[CARDS_HELD];
+		SplittableRandom random = new SplittableRandom(30050);
+		int replacements = 200000;
+		for (int i=0; i<replacements && testSuccess; i++){
+			testHand.replaceCardFromDeck(random.nextInt(CARDS_HELD));
+			for (int j=0; j<CARDS_HELD; j++){
+				cards[j] = testHand.getCard(j);
+			}
+			HandOfCards freshHand = new HandOfCards(testDeck, cards);
+			
+			boolean inOrder = true;
+			for (int j=1; j<CARDS_HELD; j++){
+				inOrder &= testHand.cardArray[j-1].getGameValue() >= testHand.cardArray[j].getGameValue();
+			}
+			if (!inOrder || testHand.gameValue != freshHand.gameValue || testHand.rankMask != freshHand.rankMask
+					|| testHand.bustedFlush != freshHand.bustedFlush || testHand.brokenStraight != freshHand.brokenStraight
+					|| !Arrays.equals(testHand.rankCounts, freshHand.rankCounts)
+					|| !Arrays.equals(testHand.suitCounts, freshHand.suitCounts)){
+				System.out.println(testHand + "classified as " + testHand.gameValue + ", EXPECTED: " + freshHand.gameValue);
+				System.out.println("####### Failed test above");
+				testSuccess = false;
+			}
+		}
+		return testSuccess;
+	}
+	
+	/**
+	 * Tests that classifying hands, replacing cards and working out discard probabilities
+	 * allocate nothing once the JIT compiler has warmed up, using the allocation counter
+	 * of the current thread
+	 * @return true if no bytes are allocated in the measured round
+	 * @throws InterruptedException 
+	 */
+	private static boolean testAllocationFree() throws InterruptedException {
+		boolean testSuccess = true;
+		
+		System.out.println("----------test for allocations on the hot path---------");
+		
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)){
+			System.out.println("Thread allocation counter not available on this JVM, test skipped");
+			return true;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		
+		// Hands dealt up front, so the loop below only works on existing objects
+		DeckOfCards testDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		HandOfCards drawingHand = new HandOfCards(testDeck);
+		HandOfCards testHand = new HandOfCards(testDeck);
+		PlayingCard[][] testHands = new PlayingCard[64][CARDS_HELD];
+		DeckOfCards handDeck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		for (int i=0; i<testHands.length; i++){
+			handDeck.shuffle();
+			handDeck.reset();
+			handDeck.deal(CARDS_HELD, testHands[i]);
+		}
+		
+		// Warm up first, then measure the last round
+		long allocated = 0;
+		int operations = 200000;
+		long checksum = 0;
+		for (int round=0; round<4; round++){
+			long before = threads.getThreadAllocatedBytes(threadId);
+			for (int i=0; i<operations; i++){
+				testHand.setHand(testHands[i & (testHands.length-1)]);
+				checksum += testHand.getGameValue() + testHand.getDiscardProbability(i % CARDS_HELD);
+				checksum += testHand.isBrokenStraight() || testHand.isBustedFlush() ? 1 : 0;
+				drawingHand.replaceCardFromDeck(i % CARDS_HELD);
+				checksum += drawingHand.getGameValue() + HandEvaluator.evaluate(testHands[i & (testHands.length-1)]);
+			}
+			allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		}
+		// Game values are all positive, checking the total also keeps the calls from being optimized away
+		System.out.println("Bytes allocated in " + operations + " operations: " + allocated + ", EXPECTED: 0");
+		if (allocated != 0 || checksum <= 0){
+			System.out.println("####### Failed test above");
+			testSuccess = false;
+		}
+		return testSuccess;
+	}
+	
 	private static boolean testIsBrokenStraight(PlayingCard[][] allCards) throws InterruptedException {
 		boolean testSuccess = true;
 		
@@ -2014,8 +1787,7 @@ public class HandOfCards {
 		PlayingCard[][] allCardsArray = new PlayingCard[13][4];
 		for (int i=0; i<13; i++){
 			for (int j=0; j<4; j++){
-				allCardsArray[i][j] = new PlayingCard(PlayingCard.CARD_TYPES[(i+1)%13], PlayingCard.SUITS[j], 
-						PlayingCard.FACE_VALUES[(i+1)%13], PlayingCard.GAME_VALUES[(i+1)%13]);
+				allCardsArray[i][j] = PlayingCard.of(PlayingCard.FACE_VALUES[(i+1)%13], PlayingCard.SUITS[j]);
 			}
 		}
 		
@@ -2026,6 +1798,11 @@ public class HandOfCards {
 		
 		
 		boolean discardProbabilityTestSuccess = testDiscardProbabilities(allCardsArray);
+		boolean dealTableTestSuccess = testDealTable();
+		boolean snapshotTestSuccess = testSnapshot();
+		boolean incrementalReplaceTestSuccess = testIncrementalReplace();
+		boolean dealTestSuccess = dealTableTestSuccess && snapshotTestSuccess && incrementalReplaceTestSuccess;
+		boolean allocationTestSuccess = testAllocationFree();
 		
 		if (boundaryTestSuccess){
 			System.out.println("### All Boundary tests between hands successful.");
@@ -2051,6 +1828,18 @@ public class HandOfCards {
 		else {
 			System.out.println("XXX Discard Probability test(s) failed, please check terminal above for failures");
 		}
+		if (dealTestSuccess){
+			System.out.println("### All Deal tests successful.");
+		}
+		else {
+			System.out.println("XXX Deal test(s) failed, please check terminal above for failures");
+		}
+		if (allocationTestSuccess){
+			System.out.println("### All Allocation tests successful.");
+		}
+		else {
+			System.out.println("XXX Allocation test(s) failed, please check terminal above for failures");
+		}
 		
 		
 		
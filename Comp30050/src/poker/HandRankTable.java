@@ -0,0 +1,244 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Precomputed game values of all 2,598,960 five card hands, stored in a binary file
+ * and read through a memory mapped buffer.
+ *
+ * Hands are indexed with the combinatorial number system: for a hand with card ordinals
+ * c1 < c2 < c3 < c4 < c5 the index is C(c1,1) + C(c2,2) + C(c3,3) + C(c4,4) + C(c5,5),
+ * which numbers every hand from 0 to 2,598,959 with no gaps.
+ *
+ * There are only 6474 different game values, so the file holds the sorted list of values
+ * once, followed by one short per hand giving the position of its value in that list:
+ *
+ * 	int magic, int hand count, int value count, int[value count] values, short[hand count] value indexes
+ *
+ * Mapping the file read only lets several JVMs on the same host share the page cache
+ * instead of each building tables at start up. Reads are thread safe.
+ */
+public final class HandRankTable {
+
+	/**
+	 * Number of different five card hands in a pack of 52
+	 */
+	public static final int HAND_COUNT = 2598960;
+
+	// Marks the start of a rank table file, "PRT1"
+	private static final int MAGIC = 0x50525431;
+	private static final int HEADER_BYTES = 12;
+
+	/*
+	 * BINOMIALS[k][n] holds n choose k for k up to 5, used for the combinatorial index
+	 */
+	private static final int[][] BINOMIALS = new int[HandOfCards.CARDS_HELD + 1][PlayingCard.UNIQUE_CARD_COUNT];
+
+	static {
+		for (int n=0; n<PlayingCard.UNIQUE_CARD_COUNT; n++){
+			BINOMIALS[0][n] = 1;
+			for (int k=1; k<=HandOfCards.CARDS_HELD; k++){
+				BINOMIALS[k][n] = n == 0 ? 0 : BINOMIALS[k][n-1] + BINOMIALS[k-1][n-1];
+			}
+		}
+	}
+
+	// Distinct game values in ascending order and the mapped file
+	private final int[] values;
+	private final MappedByteBuffer buffer;
+
+	private HandRankTable(int[] values, MappedByteBuffer buffer){
+		this.values = values;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Maps a table file written by write(Path) into memory
+	 * @throws IOException if the file can not be read or is not a rank table
+	 */
+	public static HandRankTable map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != HAND_COUNT){
+				throw new IOException("Not a hand rank table: " + file);
+			}
+			int valueCount = buffer.getInt(8);
+			if (buffer.limit() != HEADER_BYTES + 4L*valueCount + 2L*HAND_COUNT){
+				throw new IOException("Hand rank table has wrong length: " + file);
+			}
+			int[] values = new int[valueCount];
+			for (int i=0; i<valueCount; i++){
+				values[i] = buffer.getInt(HEADER_BYTES + 4*i);
+			}
+			return new HandRankTable(values, buffer);
+		}
+	}
+
+	/**
+	 * Enumerates every five card hand, works out its game value and writes the table to a file
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(Path file) throws IOException {
+		int[] handValues = new int[HAND_COUNT];
+
+		// Loop with the highest card outermost so hands come out in index order
+		int index = 0;
+		for (int c5=4; c5<PlayingCard.UNIQUE_CARD_COUNT; c5++){
+			for (int c4=3; c4<c5; c4++){
+				for (int c3=2; c3<c4; c3++){
+					for (int c2=1; c2<c3; c2++){
+						for (int c1=0; c1<c2; c1++){
+							handValues[index] = HandEvaluator.evaluate(HandEvaluator.encode(c1), HandEvaluator.encode(c2),
+									HandEvaluator.encode(c3), HandEvaluator.encode(c4), HandEvaluator.encode(c5));
+							index++;
+						}
+					}
+				}
+			}
+		}
+
+		// Sorted list of the distinct values
+		int[] sorted = handValues.clone();
+		Arrays.sort(sorted);
+		int valueCount = 0;
+		for (int i=0; i<sorted.length; i++){
+			if (i == 0 || sorted[i] != sorted[i-1]){
+				sorted[valueCount] = sorted[i];
+				valueCount++;
+			}
+		}
+		int[] values = Arrays.copyOf(sorted, valueCount);
+
+		ByteBuffer output = ByteBuffer.allocate(HEADER_BYTES + 4*valueCount + 2*HAND_COUNT);
+		output.putInt(MAGIC).putInt(HAND_COUNT).putInt(valueCount);
+		for (int i=0; i<valueCount; i++){
+			output.putInt(values[i]);
+		}
+		for (int i=0; i<HAND_COUNT; i++){
+			output.putShort((short) Arrays.binarySearch(values, handValues[i]));
+		}
+		output.flip();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			while (output.hasRemaining()){
+				channel.write(output);
+			}
+		}
+	}
+
+	/**
+	 * Returns the combinatorial index of a CardSet holding exactly five cards
+	 * Throws an IllegalArgumentException for any other CardSet, as its index would be
+	 * out of range or the index of another hand
+	 */
+	public static int indexOf(long cardSet){
+		if (Long.bitCount(cardSet) != HandOfCards.CARDS_HELD || (cardSet & ~CardSet.FULL_PACK) != 0){
+			throw new IllegalArgumentException("Not a CardSet of " + HandOfCards.CARDS_HELD + " cards: " + Long.toHexString(cardSet));
+		}
+		long remaining = cardSet;
+		int index = 0;
+		for (int k=1; k<=HandOfCards.CARDS_HELD; k++){
+			index += BINOMIALS[k][Long.numberOfTrailingZeros(remaining)];
+			remaining &= remaining - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the game value of the hand with the given combinatorial index
+	 */
+	public int rankAt(int handIndex){
+		return values[buffer.getShort(HEADER_BYTES + 4*values.length + 2*handIndex)];
+	}
+
+	/**
+	 * Returns the game value of the five cards in a CardSet
+	 * Throws an IllegalArgumentException if the CardSet does not hold exactly five cards
+	 */
+	public int rank(long cardSet){
+		return rankAt(indexOf(cardSet));
+	}
+
+	/**
+	 * Returns the game value of five cards, on the same scale as HandOfCards.getGameValue()
+	 * Throws an IllegalArgumentException unless the cards are five different cards
+	 */
+	public int rank(PlayingCard[] cards){
+		return rank(CardSet.of(cards));
+	}
+
+	/*
+	 * Writes the table to the path given as first argument, or with no arguments tests
+	 * a table written to a temporary file against HandEvaluator for every hand
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length > 0){
+			write(Paths.get(args[0]));
+			return;
+		}
+
+		boolean errorFound = false;
+		Path file = Files.createTempFile("handranks", ".bin");
+		// A mapped file can not be deleted on some platforms until the mapping is released
+		file.toFile().deleteOnExit();
+		long start = System.currentTimeMillis();
+		write(file);
+		System.out.println("Wrote " + Files.size(file) + " bytes in " + (System.currentTimeMillis() - start) + "ms");
+
+		HandRankTable table = map(file);
+		System.out.println("Mapped table with " + table.values.length + " distinct values");
+
+		// Every hand should be found at its own index with the same value as the evaluator
+		int expectedIndex = 0;
+		for (int c5=4; c5<PlayingCard.UNIQUE_CARD_COUNT; c5++){
+			for (int c4=3; c4<c5; c4++){
+				for (int c3=2; c3<c4; c3++){
+					for (int c2=1; c2<c3; c2++){
+						for (int c1=0; c1<c2; c1++){
+							PlayingCard[] hand = {PlayingCard.fromOrdinal(c5), PlayingCard.fromOrdinal(c3),
+									PlayingCard.fromOrdinal(c1), PlayingCard.fromOrdinal(c4), PlayingCard.fromOrdinal(c2)};
+							if (indexOf(CardSet.of(hand)) != expectedIndex || table.rank(hand) != HandEvaluator.evaluate(hand)){
+								System.out.println("ERROR: WRONG RANK FOR " + CardSet.toString(CardSet.of(hand)));
+								errorFound = true;
+							}
+							expectedIndex++;
+						}
+					}
+				}
+			}
+		}
+
+		// Sets of more or fewer than five cards should be turned away, not read as another hand
+		long fiveCards = CardSet.of(new PlayingCard[] {PlayingCard.fromOrdinal(1), PlayingCard.fromOrdinal(2),
+				PlayingCard.fromOrdinal(3), PlayingCard.fromOrdinal(4), PlayingCard.fromOrdinal(32)});
+		long[] badSets = {fiveCards | (1L << 51), fiveCards & (fiveCards - 1), CardSet.EMPTY, (fiveCards & (fiveCards - 1)) | (1L << 60)};
+		for (int i=0; i<badSets.length; i++){
+			try {
+				table.rank(badSets[i]);
+				System.out.println("ERROR: RANKED A SET OF " + Long.bitCount(badSets[i]) + " CARDS " + Long.toHexString(badSets[i]));
+				errorFound = true;
+			}
+			catch (IllegalArgumentException e){
+			}
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
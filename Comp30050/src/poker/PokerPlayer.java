@@ -1,45 +1,142 @@
 package poker;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class PokerPlayer {
-	
+
+	// Set once a player has been told there is no strategy table to read discards from
+	private static final AtomicBoolean warnedNoStrategy = new AtomicBoolean();
+
 	/*
 	 * Private internal fields for the class
 	 */
-	private DeckOfCards deck;
+	private Deck deck;
 	private HandOfCards hand;
-	
+	private DrawStrategyTable strategy;
+	private EquitySimulator.DiscardPolicy policy;
+
 	/**
 	 * Constructor takes a deck of cards and deals the player a hand
+	 * The player reads discards from the table named by the poker.drawStrategyTable system
+	 * property, see DrawStrategyTable.shared(), which is mapped the first time a player is made
+	 */
+	public PokerPlayer(Deck deck) throws InterruptedException{
+		this(deck, DrawStrategyTable.shared());
+	}
+
+	/**
+	 * Constructor takes a deck of cards and a precomputed strategy table and deals the player a hand
+	 * With a null table and no policy each discard is worked out by exact analysis, which
+	 * takes milliseconds rather than one read, and a warning is printed the first time
+	 */
+	public PokerPlayer(Deck deck, DrawStrategyTable strategy) throws InterruptedException{
+		this.deck = deck;
+		this.strategy = strategy;
+		hand = new HandOfCards(this.deck);
+	}
+
+	/**
+	 * Constructor takes a deck of cards and the policy the player discards by and deals the player a hand
 	 */
-	public PokerPlayer(DeckOfCards deck) throws InterruptedException{
+	public PokerPlayer(Deck deck, EquitySimulator.DiscardPolicy policy) throws InterruptedException{
 		this.deck = deck;
+		this.policy = policy;
 		hand = new HandOfCards(this.deck);
 	}
-	
+
 	/**
 	 * Discards up to three cards from the hand and replaces them with new cards from
 	 * the deck
+	 * The cards to throw away are looked up in the strategy table in one read, or
+	 * chosen by the player's discard policy if it has one, or otherwise worked out by
+	 * exact analysis of every draw, which is slow
 	 * Returns an int indicating how many cards were discarded
 	 */
-	public int discard(){
-		
-		int cardsDiscarded = 0;
-		
-		if (hand.isBrokenStraight()|| hand.isBustedFlush()){
-			//Account for broken straight && busted flush too
+	public int discard() throws InterruptedException{
+
+		int discardMask;
+		if (strategy != null){
+			discardMask = strategy.discardMask(hand);
 		}
 		else {
-			for (int i=0; i<hand.CARDS_HELD; i++){
-				
+			PlayingCard[] cards = new PlayingCard[HandOfCards.CARDS_HELD];
+			for (int i=0; i<cards.length; i++){
+				cards[i] = hand.getCard(i);
+			}
+			if (policy != null){
+				discardMask = policy.discardMask(cards);
+			}
+			else {
+				if (warnedNoStrategy.compareAndSet(false, true)){
+					System.err.println("No draw strategy table, working out every discard by exact analysis."
+							+ " Write one with DrawStrategyTable.main and name it with -D" + DrawStrategyTable.TABLE_PROPERTY);
+				}
+				discardMask = DrawStrategyTable.bestDiscardMask(cards);
+			}
+		}
+
+		// Pick out the cards first as the hand is sorted again after each replacement
+		PlayingCard[] discards = new PlayingCard[Integer.bitCount(discardMask)];
+		int cardsDiscarded = 0;
+		for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+			if ((discardMask & (1 << i)) != 0){
+				discards[cardsDiscarded] = hand.getCard(i);
+				cardsDiscarded++;
+			}
+		}
+
+		for (int i=0; i<discards.length; i++){
+			for (int j=0; j<HandOfCards.CARDS_HELD; j++){
+				if (hand.getCard(j) == discards[i]){
+					hand.replaceCardFromDeck(j);
+					break;
+				}
 			}
 		}
-		
+
 		return cardsDiscarded;
 	}
 
-	public static void main(String[] args) {
-		// TODO Auto-generated method stub
+	// Accessor method for the hand
+	public HandOfCards getHand(){
+		return hand;
+	}
+
+	/*
+	 * Main method deals some players and checks their discards, printing each hand
+	 * before and after the draw
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+
+		for (int i=0; i<10; i++){
+			DeckOfCards deck = new DeckOfCards();
+			PokerPlayer player = new PokerPlayer(deck);
+			String before = player.getHand().toString();
+			long cardsBefore = player.getHand().getCardSet();
+
+			int cardsDiscarded = player.discard();
+			long cardsAfter = player.getHand().getCardSet();
+			System.out.println(before + "-> " + player.getHand().toString() + "discarded " + cardsDiscarded);
+
+			// Cards kept should still be there, and the hand should be five different dealt cards
+			if (cardsDiscarded > DrawStrategyTable.MAX_DISCARDS
+					|| CardSet.size(cardsAfter) != HandOfCards.CARDS_HELD
+					|| CardSet.size(cardsBefore & cardsAfter) != HandOfCards.CARDS_HELD - cardsDiscarded
+					|| (cardsAfter & ~deck.getDealtCards()) != 0){
+				System.out.println("####### Failed test above");
+				errorFound = true;
+			}
+		}
 
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
 	}
 
 }
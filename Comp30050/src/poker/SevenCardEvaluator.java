@@ -0,0 +1,257 @@
+package poker;
+
+import java.util.Random;
+
+/**
+ * Evaluator for the best hand of five that can be made from up to seven cards,
+ * as used at Hold'em tables where each player has two cards of their own and five shared.
+ *
+ * Returns the game value of the best five card hand directly, on the same scale as
+ * HandOfCards.getGameValue(), without trying each of the 21 possible five card hands.
+ *
+ * The cards are split into one 13 bit rank mask per suit (bit 0 for a two up to bit 12
+ * for an ace). Flushes are found from the size of each suit mask, and ranks held two,
+ * three or four times are found by and-ing the suit masks together, so the whole
+ * evaluation is a few dozen bit operations with no tables and no allocation.
+ */
+public final class SevenCardEvaluator {
+
+	// Base used for values within hand types, as in HandOfCards.getGameValue()
+	private static final int EXPONENTIAL_BASE = 15;
+
+	// Number of card types in a suit
+	private static final int TYPES_PER_SUIT = 13;
+
+	// No instances, all methods are static
+	private SevenCardEvaluator(){
+	}
+
+	/**
+	 * Returns the game value of the best five cards in the array, which may hold five to seven cards
+	 */
+	public static int evaluate(PlayingCard[] cards){
+		return evaluate(CardSet.of(cards));
+	}
+
+	/**
+	 * Returns the game value of the best five cards in a CardSet of five to seven cards
+	 */
+	public static int evaluate(long cards){
+		int hearts = suitRanks(cards, 0);
+		int diamonds = suitRanks(cards, 1);
+		int clubs = suitRanks(cards, 2);
+		int spades = suitRanks(cards, 3);
+
+		/*
+		 * With seven cards, five of one suit leave too few cards for four of a kind
+		 * or a full house, so a flush is always the best hand unless it is a straight flush
+		 */
+		int flushRanks = 0;
+		if (Integer.bitCount(hearts) >= 5){
+			flushRanks = hearts;
+		}
+		else if (Integer.bitCount(diamonds) >= 5){
+			flushRanks = diamonds;
+		}
+		else if (Integer.bitCount(clubs) >= 5){
+			flushRanks = clubs;
+		}
+		else if (Integer.bitCount(spades) >= 5){
+			flushRanks = spades;
+		}
+		if (flushRanks != 0){
+			int straightHigh = straightHighCard(flushRanks);
+			if (straightHigh == 14){
+				return HandOfCards.ROYAL_FLUSH_DEFAULT;
+			}
+			if (straightHigh > 0){
+				return HandOfCards.STRAIGHT_FLUSH_DEFAULT + straightHigh;
+			}
+			return HandOfCards.FLUSH_DEFAULT + topRanks(flushRanks, 5);
+		}
+
+		// Ranks held at least once, twice, three times and four times
+		int anyRanks = hearts | diamonds | clubs | spades;
+		int pairRanks = (hearts & diamonds) | (clubs & spades) | ((hearts | diamonds) & (clubs | spades));
+		int tripsRanks = (hearts & diamonds & (clubs | spades)) | (clubs & spades & (hearts | diamonds));
+		int quadRanks = hearts & diamonds & clubs & spades;
+
+		if (quadRanks != 0){
+			int quadRank = highestRank(quadRanks);
+			return HandOfCards.FOUR_OF_A_KIND_DEFAULT + (quadRank + 2) * EXPONENTIAL_BASE
+					+ topRanks(anyRanks & ~(1 << quadRank), 1);
+		}
+
+		// Only the three matching cards count in a full house or three of a kind
+		int tripsRank = -1;
+		if (tripsRanks != 0){
+			tripsRank = highestRank(tripsRanks);
+			if ((pairRanks & ~(1 << tripsRank)) != 0){
+				return HandOfCards.FULL_HOUSE_DEFAULT + tripsRank + 2;
+			}
+		}
+
+		int straightHigh = straightHighCard(anyRanks);
+		if (straightHigh > 0){
+			return HandOfCards.STRAIGHT_DEFAULT + straightHigh;
+		}
+
+		if (tripsRank >= 0){
+			return HandOfCards.THREE_OF_A_KIND_DEFAULT + tripsRank + 2;
+		}
+
+		if (pairRanks != 0){
+			int highPair = highestRank(pairRanks);
+			int otherPairs = pairRanks & ~(1 << highPair);
+
+			// With three pairs the lowest pair can still give the kicker
+			if (otherPairs != 0){
+				int lowPair = highestRank(otherPairs);
+				return HandOfCards.TWO_PAIR_DEFAULT + (highPair + 2) * EXPONENTIAL_BASE * EXPONENTIAL_BASE
+						+ (lowPair + 2) * EXPONENTIAL_BASE + topRanks(anyRanks & ~(1 << highPair) & ~(1 << lowPair), 1);
+			}
+			return HandOfCards.ONE_PAIR_DEFAULT + (highPair + 2) * EXPONENTIAL_BASE * EXPONENTIAL_BASE * EXPONENTIAL_BASE
+					+ topRanks(anyRanks & ~(1 << highPair), 3);
+		}
+
+		return HandOfCards.HIGH_HAND_DEFAULT + topRanks(anyRanks, 5);
+	}
+
+	/**
+	 * Returns the rank mask of one suit from a CardSet. CardSet holds the ace as the lowest
+	 * bit of each suit, so it is moved to the top to make bit 0 a two and bit 12 an ace
+	 */
+	private static int suitRanks(long cards, int suitIndex){
+		int types = CardSet.suitTypes(cards, suitIndex);
+		return (types >>> 1) | ((types & 1) << (TYPES_PER_SUIT - 1));
+	}
+
+	// Returns the highest rank bit set in a mask, 0 for a two up to 12 for an ace
+	private static int highestRank(int rankMask){
+		return 31 - Integer.numberOfLeadingZeros(rankMask);
+	}
+
+	/**
+	 * Adds up the game values of the highest count ranks in the mask by base 15
+	 * exponentials, highest first
+	 */
+	private static int topRanks(int rankMask, int count){
+		int value = 0;
+		int remaining = rankMask;
+		for (int i=0; i<count; i++){
+			int rank = highestRank(remaining);
+			value = value * EXPONENTIAL_BASE + rank + 2;
+			remaining &= ~(1 << rank);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the game value of the highest card of the best straight in a rank mask,
+	 * with a five for A,5,4,3,2, or 0 if there is no straight
+	 */
+	private static int straightHighCard(int rankMask){
+		// Bit 0 is the ace played low, bit 1 a two and so on up to bit 13 for an ace
+		int sequence = (rankMask << 1) | (rankMask >>> (TYPES_PER_SUIT - 1));
+		int runsOfFive = sequence & (sequence >>> 1) & (sequence >>> 2) & (sequence >>> 3) & (sequence >>> 4);
+		if (runsOfFive == 0){
+			return 0;
+		}
+		return highestRank(runsOfFive) + 5;
+	}
+
+	/**
+	 * Finds the best game value of seven cards by trying all 21 hands of five with
+	 * HandEvaluator. Slow but simple, used to test the evaluator
+	 */
+	private static int bestOfFive(int[] ordinals){
+		int best = 0;
+		for (int skip1=0; skip1<ordinals.length; skip1++){
+			for (int skip2=skip1+1; skip2<ordinals.length; skip2++){
+				int[] encoded = new int[5];
+				int filled = 0;
+				for (int i=0; i<ordinals.length; i++){
+					if (i != skip1 && i != skip2){
+						encoded[filled] = HandEvaluator.encode(ordinals[i]);
+						filled++;
+					}
+				}
+				best = Math.max(best, HandEvaluator.evaluate(encoded[0], encoded[1], encoded[2], encoded[3], encoded[4]));
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Main method tests the evaluator against the best of all five card hands for
+	 * random seven card hands, then times it
+	 */
+	public static void main(String[] args) {
+
+		boolean errorFound = false;
+		Random rand = new Random(30050);
+		PlayingCard[] pack = PlayingCard.newFullPack();
+
+		// Five cards should give exactly the same value as HandEvaluator
+		for (int i=0; i<100000; i++){
+			long cards = randomCards(rand, 5);
+			PlayingCard[] hand = new PlayingCard[5];
+			int filled = 0;
+			for (long remaining = cards; remaining != 0; remaining &= remaining - 1){
+				hand[filled] = pack[CardSet.lowestIndex(remaining)];
+				filled++;
+			}
+			if (evaluate(cards) != HandEvaluator.evaluate(hand)){
+				System.out.println("ERROR: FIVE CARD VALUE WRONG FOR " + CardSet.toString(cards));
+				errorFound = true;
+			}
+		}
+
+		// Seven cards should give the best value of the 21 hands of five
+		long[] testHands = new long[1000000];
+		for (int i=0; i<testHands.length; i++){
+			testHands[i] = randomCards(rand, 7);
+			int[] ordinals = new int[7];
+			int filled = 0;
+			for (long remaining = testHands[i]; remaining != 0; remaining &= remaining - 1){
+				ordinals[filled] = CardSet.lowestIndex(remaining);
+				filled++;
+			}
+			if (evaluate(testHands[i]) != bestOfFive(ordinals)){
+				System.out.println("ERROR: SEVEN CARD VALUE WRONG FOR " + CardSet.toString(testHands[i])
+						+ " GOT " + evaluate(testHands[i]) + " EXPECTED " + bestOfFive(ordinals));
+				errorFound = true;
+			}
+		}
+
+		// Time evaluations of the same hands, a few rounds to let the JIT compiler warm up
+		for (int round=0; round<5; round++){
+			long start = System.nanoTime();
+			long checksum = 0;
+			for (int i=0; i<testHands.length; i++){
+				checksum += evaluate(testHands[i]);
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.println("Evaluated " + testHands.length + " seven card hands in " + elapsed/1000000 + "ms, "
+					+ (testHands.length * 1000L / Math.max(1, elapsed/1000000)) + " per second (checksum " + checksum + ")");
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+	// Returns a CardSet of the given number of different random cards
+	private static long randomCards(Random rand, int count){
+		long cards = CardSet.EMPTY;
+		while (CardSet.size(cards) < count){
+			cards = CardSet.add(cards, rand.nextInt(PlayingCard.UNIQUE_CARD_COUNT));
+		}
+		return cards;
+	}
+
+}
@@ -0,0 +1,179 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays many tables of five card draw split across a fixed number of shards, by default
+ * one per core. Each shard owns its tables and their decks and plays them on one platform
+ * thread in a tight loop, one hand at each table in turn.
+ *
+ * A table is only ever played on its own shard's thread, so its deck never crosses threads
+ * and is an UnsynchronizedDeckOfCards. Dealing takes no Semaphore, and no two shards share
+ * any data while they play, so the shards never contend. The threads are started for each
+ * run and joined at its end, which publishes the tables' counts to the caller safely.
+ *
+ * The tables are set up in the same order and from the same seed as a GameEngine, so the
+ * same seed deals the same hands at every table under either.
+ */
+public class ShardedScheduler {
+
+	private final Table[] tables;
+	private final int shardCount;
+
+	/*
+	 * Constructor sets up the given number of tables on one shard per core, each seating
+	 * the same number of players who all discard by the given policy
+	 */
+	public ShardedScheduler(int tableCount, int players, EquitySimulator.DiscardPolicy policy){
+		this(tableCount, players, policy, Runtime.getRuntime().availableProcessors(), new SplittableRandom());
+	}
+
+	/*
+	 * Constructor with the number of shards and a seed, so every table deals the same hands each time
+	 */
+	public ShardedScheduler(int tableCount, int players, EquitySimulator.DiscardPolicy policy, int shardCount, long seed){
+		this(tableCount, players, policy, shardCount, new SplittableRandom(seed));
+	}
+
+	private ShardedScheduler(int tableCount, int players, EquitySimulator.DiscardPolicy policy, int shardCount,
+			SplittableRandom random){
+		if (tableCount < 1 || shardCount < 1){
+			throw new IllegalArgumentException("Need at least one table and one shard, got " + tableCount
+					+ " tables and " + shardCount + " shards");
+		}
+		this.shardCount = shardCount;
+		tables = new Table[tableCount];
+		for (int i=0; i<tables.length; i++){
+			tables[i] = new Table(players, policy, new UnsynchronizedDeckOfCards(new FisherYatesShuffle(random.split())));
+		}
+	}
+
+	/**
+	 * Plays the given number of hands at every table and returns once every shard has
+	 * finished. Table i is played on shard i % getShardCount()
+	 * The tables' phase times are cleared first so the results cover only this run
+	 */
+	public GameEngine.Result run(int handsPerTable) throws InterruptedException{
+		long[] handsBefore = new long[tables.length];
+		for (int t=0; t<tables.length; t++){
+			handsBefore[t] = tables[t].getHandsPlayed();
+			tables[t].clearLatencies();
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] shards = new Thread[shardCount];
+		for (int s=0; s<shards.length; s++){
+			int shard = s;
+			shards[s] = new Thread(() -> {
+				try {
+					for (int hand=0; hand<handsPerTable; hand++){
+						for (int t=shard; t<tables.length; t+=shardCount){
+							tables[t].playHand();
+						}
+					}
+				}
+				catch (Throwable e){
+					failure.compareAndSet(null, e);
+				}
+			}, "poker-shard-" + s);
+			shards[s].setDaemon(true);
+		}
+
+		long start = System.nanoTime();
+		for (int s=0; s<shards.length; s++){
+			shards[s].start();
+		}
+		for (int s=0; s<shards.length; s++){
+			shards[s].join();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (failure.get() != null){
+			throw new IllegalStateException("A shard stopped playing", failure.get());
+		}
+
+		long hands = 0;
+		GameEngine.LatencyHistogram[] latencies = new GameEngine.LatencyHistogram[GameEngine.PHASE_COUNT];
+		for (int phase=0; phase<GameEngine.PHASE_COUNT; phase++){
+			latencies[phase] = new GameEngine.LatencyHistogram();
+		}
+		for (int t=0; t<tables.length; t++){
+			hands += tables[t].getHandsPlayed() - handsBefore[t];
+			for (int phase=0; phase<GameEngine.PHASE_COUNT; phase++){
+				latencies[phase].add(tables[t].getLatency(phase));
+			}
+		}
+		return new GameEngine.Result(hands, elapsed, latencies, false);
+	}
+
+	// Accessor for the number of shards
+	public int getShardCount(){
+		return shardCount;
+	}
+
+	// Accessor for the number of tables
+	public int getTableCount(){
+		return tables.length;
+	}
+
+	// Accessor for a table
+	public Table getTable(int index){
+		return tables[index];
+	}
+
+	/*
+	 * Main method plays hands at many seeded tables on several shards, checks every hand is
+	 * counted and that every seat wins the same pots as under a GameEngine with the same
+	 * seed, then prints the throughput of both
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		boolean errorFound = false;
+		int tableCount = 10000;
+		int players = 4;
+		int handsPerTable = 20;
+		int shardCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		ShardedScheduler scheduler = new ShardedScheduler(tableCount, players, EquitySimulator.KEEP_MATCHES, shardCount, 30050);
+		GameEngine engine = new GameEngine(tableCount, players, EquitySimulator.KEEP_MATCHES, 30050);
+		scheduler.run(handsPerTable);
+		engine.run(handsPerTable);
+		GameEngine.Result result = scheduler.run(handsPerTable);
+		GameEngine.Result engineResult = engine.run(handsPerTable);
+		System.out.println(shardCount + " shards: " + result);
+		System.out.println("engine: " + engineResult);
+
+		long expectedHands = (long) tableCount * handsPerTable;
+		if (result.getHands() != expectedHands){
+			System.out.println("ERROR: " + result.getHands() + " HANDS PLAYED, EXPECTED " + expectedHands);
+			errorFound = true;
+		}
+		for (int phase=0; phase<GameEngine.PHASE_COUNT; phase++){
+			if (result.getLatency(phase).getCount() != expectedHands){
+				System.out.println("ERROR: " + GameEngine.PHASE_NAMES[phase] + " TIMED " + result.getLatency(phase).getCount()
+						+ " TIMES, EXPECTED " + expectedHands);
+				errorFound = true;
+			}
+		}
+
+		// The same seed should deal the same hands at every table as the engine did
+		for (int t=0; t<tableCount && !errorFound; t++){
+			for (int seat=0; seat<players; seat++){
+				if (scheduler.getTable(t).getWins(seat) != engine.getTable(t).getWins(seat)){
+					System.out.println("ERROR: TABLE " + t + " SEAT " + seat + " WON " + scheduler.getTable(t).getWins(seat)
+							+ " POTS, EXPECTED " + engine.getTable(t).getWins(seat));
+					errorFound = true;
+				}
+			}
+		}
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
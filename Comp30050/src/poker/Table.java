@@ -0,0 +1,270 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A table of five card draw with its own deck. Each hand is played in three phases:
+ * the deal, where the deck is shuffled and every seat is dealt a new PokerPlayer, the
+ * discard, where every player draws by the table's discard policy, and the showdown,
+ * where the best hand takes the pot and ties share it. Each seat's hand can also be
+ * written to a HandHistoryLog at the showdown.
+ *
+ * A table is played by one thread at a time and shares nothing with other tables, so
+ * many tables can be played at once by a GameEngine. The time each phase takes is kept
+ * in the table's own histograms, so recording it needs no locks or shared counters.
+ */
+public class Table {
+
+	/**
+	 * Most players there are always enough fresh cards for, with everyone drawing three
+	 */
+	public static final int MAX_PLAYERS = 6;
+
+	private final Deck deck;
+	private final EquitySimulator.DiscardPolicy policy;
+	private final PokerPlayer[] players;
+
+	// Pots won by each seat, a shared pot counts as a win for every seat in it
+	private final long[] wins;
+	private long handsPlayed;
+
+	// Log every seat's hand is written to, if any, and the cards each seat was dealt
+	private HandHistoryLog history;
+	private int tableId;
+	private final int[] dealtHands;
+
+	// Time taken by each phase, indexed by GameEngine.DEAL, DISCARD and SHOWDOWN
+	private final GameEngine.LatencyHistogram[] latencies = new GameEngine.LatencyHistogram[GameEngine.PHASE_COUNT];
+
+	/*
+	 * Constructor takes the number of players, the policy they all discard by and the
+	 * shuffle for the table's deck
+	 */
+	public Table(int players, EquitySimulator.DiscardPolicy policy, ShuffleStrategy shuffler){
+		this(players, policy, new DeckOfCards(shuffler));
+	}
+
+	/*
+	 * Constructor takes the number of players, the policy they all discard by and the deck
+	 * to deal from, eg. an UnsynchronizedDeckOfCards for a table that stays on one thread
+	 */
+	public Table(int players, EquitySimulator.DiscardPolicy policy, Deck deck){
+		if (players < 2 || players > MAX_PLAYERS){
+			throw new IllegalArgumentException("Players must be from 2 to " + MAX_PLAYERS + ", got " + players);
+		}
+		this.deck = deck;
+		this.policy = policy;
+		this.players = new PokerPlayer[players];
+		this.wins = new long[players];
+		this.dealtHands = new int[players];
+		for (int i=0; i<latencies.length; i++){
+			latencies[i] = new GameEngine.LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Plays one hand through the deal, discard and showdown, timing each phase
+	 * Returns a mask of the seats that won the pot
+	 */
+	public int playHand() throws InterruptedException{
+		long start = System.nanoTime();
+		deck.shuffle();
+		deck.reset();
+		for (int i=0; i<players.length; i++){
+			players[i] = new PokerPlayer(deck, policy);
+			if (history != null){
+				dealtHands[i] = players[i].getHand().snapshot();
+			}
+		}
+		long dealt = System.nanoTime();
+
+		for (int i=0; i<players.length; i++){
+			players[i].discard();
+		}
+		long drawn = System.nanoTime();
+
+		int bestValue = 0;
+		int winners = 0;
+		for (int i=0; i<players.length; i++){
+			int value = players[i].getHand().getGameValue();
+			if (value > bestValue){
+				bestValue = value;
+				winners = 1 << i;
+			}
+			else if (value == bestValue){
+				winners |= 1 << i;
+			}
+		}
+		for (int i=0; i<players.length; i++){
+			if ((winners & (1 << i)) != 0){
+				wins[i]++;
+			}
+			if (history != null){
+				HandOfCards hand = players[i].getHand();
+				history.append(tableId, (int) handsPlayed, i, dealtHands[i], hand.getCardSet(), hand.getGameValue(),
+						(winners & (1 << i)) != 0);
+			}
+		}
+		handsPlayed++;
+		long finished = System.nanoTime();
+
+		latencies[GameEngine.DEAL].record(dealt - start);
+		latencies[GameEngine.DISCARD].record(drawn - dealt);
+		latencies[GameEngine.SHOWDOWN].record(finished - drawn);
+		return winners;
+	}
+
+	/**
+	 * Writes every seat's hand to the given log from the next hand on, under the given
+	 * table id, or stops writing if the log is null. Committing the log is left to the caller
+	 */
+	public void setHistory(HandHistoryLog history, int tableId){
+		this.history = history;
+		this.tableId = tableId;
+	}
+
+	/**
+	 * Empties the phase time histograms, for the start of a new run
+	 */
+	void clearLatencies(){
+		for (int i=0; i<latencies.length; i++){
+			latencies[i].clear();
+		}
+	}
+
+	// Accessor for the number of players at the table
+	public int getPlayerCount(){
+		return players.length;
+	}
+
+	// Accessor for the player in a seat, null before the first hand
+	public PokerPlayer getPlayer(int seat){
+		return players[seat];
+	}
+
+	// Accessor for the number of pots won by a seat
+	public long getWins(int seat){
+		return wins[seat];
+	}
+
+	// Accessor for the number of hands played
+	public long getHandsPlayed(){
+		return handsPlayed;
+	}
+
+	// Accessor for the times taken by one phase, GameEngine.DEAL, DISCARD or SHOWDOWN
+	public GameEngine.LatencyHistogram getLatency(int phase){
+		return latencies[phase];
+	}
+
+	/*
+	 * Main method plays many hands at a seeded table and checks every player holds five
+	 * cards no one else holds, the winners hold the best hand and every phase was timed
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+
+		boolean errorFound = false;
+		Table table = new Table(MAX_PLAYERS, EquitySimulator.KEEP_MATCHES, FisherYatesShuffle.seeded(30050));
+
+		int hands = 20000;
+		long potsWon = 0;
+		for (int hand=0; hand<hands && !errorFound; hand++){
+			int winners = table.playHand();
+			potsWon += Integer.bitCount(winners);
+
+			long cardsHeld = CardSet.EMPTY;
+			int bestValue = 0;
+			for (int seat=0; seat<table.getPlayerCount(); seat++){
+				HandOfCards playerHand = table.getPlayer(seat).getHand();
+				cardsHeld |= playerHand.getCardSet();
+				bestValue = Math.max(bestValue, playerHand.getGameValue());
+			}
+			if (CardSet.size(cardsHeld) != table.getPlayerCount() * HandOfCards.CARDS_HELD){
+				System.out.println("ERROR: PLAYERS SHARE CARDS IN HAND " + hand);
+				errorFound = true;
+			}
+			for (int seat=0; seat<table.getPlayerCount(); seat++){
+				boolean best = table.getPlayer(seat).getHand().getGameValue() == bestValue;
+				if (best != ((winners & (1 << seat)) != 0)){
+					System.out.println("ERROR: SEAT " + seat + " GIVEN THE WRONG RESULT IN HAND " + hand + ": "
+							+ table.getPlayer(seat).getHand());
+					errorFound = true;
+				}
+			}
+		}
+
+		// Every hand should be counted once and every pot given out
+		long totalWins = 0;
+		for (int seat=0; seat<table.getPlayerCount(); seat++){
+			totalWins += table.getWins(seat);
+		}
+		if (table.getHandsPlayed() != hands || totalWins != potsWon || totalWins < hands){
+			System.out.println("ERROR: " + table.getHandsPlayed() + " HANDS PLAYED AND " + totalWins + " POTS WON, EXPECTED "
+					+ hands + " HANDS");
+			errorFound = true;
+		}
+		for (int phase=0; phase<GameEngine.PHASE_COUNT; phase++){
+			System.out.println(GameEngine.PHASE_NAMES[phase] + ": " + table.getLatency(phase));
+			if (table.getLatency(phase).getCount() != hands){
+				System.out.println("ERROR: " + GameEngine.PHASE_NAMES[phase] + " TIMED " + table.getLatency(phase).getCount() + " TIMES");
+				errorFound = true;
+			}
+		}
+
+		// Every seat's hand should be written to the history with the right result
+		Path directory = Files.createTempDirectory("table-history");
+		Table loggedTable = new Table(4, EquitySimulator.KEEP_MATCHES, FisherYatesShuffle.seeded(30050));
+		try (HandHistoryLog log = new HandHistoryLog(directory, 1000, 0)){
+			loggedTable.setHistory(log, 7);
+			for (int hand=0; hand<1000; hand++){
+				loggedTable.playHand();
+			}
+			log.commit();
+		}
+		long records = 0;
+		long[] loggedWins = new long[loggedTable.getPlayerCount()];
+		try (HandHistoryLog.Reader reader = new HandHistoryLog.Reader(directory)){
+			while (reader.next()){
+				records++;
+				if (reader.getTableId() != 7 || reader.getSeat() != (records - 1) % loggedTable.getPlayerCount()
+						|| reader.getHandNumber() != (records - 1) / loggedTable.getPlayerCount()){
+					System.out.println("ERROR: HISTORY RECORD " + records + " FOR TABLE " + reader.getTableId() + " HAND "
+							+ reader.getHandNumber() + " SEAT " + reader.getSeat());
+					errorFound = true;
+				}
+				if (reader.isWinner()){
+					loggedWins[reader.getSeat()]++;
+				}
+			}
+		}
+		if (records != 1000 * loggedTable.getPlayerCount()){
+			System.out.println("ERROR: " + records + " HISTORY RECORDS, EXPECTED " + 1000 * loggedTable.getPlayerCount());
+			errorFound = true;
+		}
+		for (int seat=0; seat<loggedWins.length; seat++){
+			if (loggedWins[seat] != loggedTable.getWins(seat)){
+				System.out.println("ERROR: HISTORY GIVES SEAT " + seat + " " + loggedWins[seat] + " WINS, EXPECTED "
+						+ loggedTable.getWins(seat));
+				errorFound = true;
+			}
+		}
+		try (Stream<Path> files = Files.list(directory)){
+			for (Path file : (Iterable<Path>) files::iterator){
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+
+		// Print error status
+		if (errorFound){
+			System.out.println("###Error found, please check above in console for cause.");
+		}
+		else {
+			System.out.println("###Test completed with no errors.");
+		}
+	}
+
+}
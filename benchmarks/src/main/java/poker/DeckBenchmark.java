@@ -0,0 +1,139 @@
+package poker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks building, shuffling, dealing from and returning to decks, with one thread
+ * and with several threads sharing one deck
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeckBenchmark {
+
+	/**
+	 * A deck of each kind, for the single threaded benchmarks each thread has its own
+	 */
+	@State(Scope.Thread)
+	public static class OwnDeck {
+
+		@Param({"semaphore", "lockfree", "unsynchronized"})
+		public String deckType;
+
+		Deck deck;
+
+		@Setup(Level.Iteration)
+		public void setUp(){
+			deck = newDeck(deckType);
+		}
+	}
+
+	/**
+	 * One deck of each kind shared by all the benchmark threads
+	 */
+	@State(Scope.Benchmark)
+	public static class SharedDeck {
+
+		@Param({"semaphore", "lockfree"})
+		public String deckType;
+
+		Deck deck;
+
+		@Setup(Level.Iteration)
+		public void setUp(){
+			deck = newDeck(deckType);
+		}
+	}
+
+	static Deck newDeck(String deckType){
+		if (deckType.equals("lockfree")){
+			return new LockFreeDeckOfCards();
+		}
+		if (deckType.equals("unsynchronized")){
+			return new UnsynchronizedDeckOfCards();
+		}
+		return new DeckOfCards();
+	}
+
+	@Benchmark
+	public PlayingCard[] newFullPack(){
+		return PlayingCard.newFullPack();
+	}
+
+	@Benchmark
+	public DeckOfCards newDeck(){
+		return new DeckOfCards();
+	}
+
+	@Benchmark
+	public void shuffle(OwnDeck state){
+		state.deck.shuffle();
+		state.deck.reset();
+	}
+
+	/**
+	 * Deals a card and returns it, as a player drawing one card does
+	 */
+	@Benchmark
+	public PlayingCard dealAndReturn(OwnDeck state) throws InterruptedException {
+		PlayingCard card = state.deck.dealNext();
+		state.deck.returnCard(card);
+		return card;
+	}
+
+	/**
+	 * Deals five cards one at a time and returns them
+	 */
+	@Benchmark
+	public PlayingCard dealHandOneByOne(OwnDeck state) throws InterruptedException {
+		PlayingCard[] hand = new PlayingCard[HandOfCards.CARDS_HELD];
+		for (int i=0; i<hand.length; i++){
+			hand[i] = state.deck.dealNext();
+		}
+		for (int i=0; i<hand.length; i++){
+			state.deck.returnCard(hand[i]);
+		}
+		return hand[0];
+	}
+
+	/**
+	 * Deals five cards in one block and returns them
+	 */
+	@Benchmark
+	public PlayingCard dealHandInBlock(OwnDeck state) throws InterruptedException {
+		PlayingCard[] hand = new PlayingCard[HandOfCards.CARDS_HELD];
+		state.deck.deal(hand.length, hand);
+		for (int i=0; i<hand.length; i++){
+			state.deck.returnCard(hand[i]);
+		}
+		return hand[0];
+	}
+
+	/**
+	 * Four threads dealing from and returning to the same deck
+	 */
+	@Benchmark
+	@Threads(4)
+	public PlayingCard dealAndReturnContended(SharedDeck state) throws InterruptedException {
+		PlayingCard card = state.deck.dealNext();
+		state.deck.returnCard(card);
+		return card;
+	}
+
+}
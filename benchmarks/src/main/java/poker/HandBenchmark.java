@@ -0,0 +1,108 @@
+package poker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks classifying and querying hands. The hands are dealt from seeded shuffled
+ * decks, so hand types turn up as often as they do at the table, and each call moves on
+ * to the next hand so branch prediction can not learn a single hand
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandBenchmark {
+
+	// Number of dealt hands cycled through, a power of two
+	private static final int HAND_COUNT = 4096;
+
+	private PlayingCard[][] dealtCards;
+	private HandOfCards[] hands;
+	private HandOfCards scratchHand;
+	private int next;
+
+	@Setup
+	public void setUp() throws InterruptedException {
+		dealtCards = new PlayingCard[HAND_COUNT][];
+		hands = new HandOfCards[HAND_COUNT];
+		DeckOfCards deck = new DeckOfCards(FisherYatesShuffle.seeded(30050));
+		for (int i=0; i<HAND_COUNT; i++){
+			deck.shuffle();
+			deck.reset();
+			hands[i] = new HandOfCards(deck);
+			dealtCards[i] = new PlayingCard[HandOfCards.CARDS_HELD];
+			for (int j=0; j<HandOfCards.CARDS_HELD; j++){
+				dealtCards[i][j] = hands[i].getCard(j);
+			}
+		}
+		scratchHand = new HandOfCards(new DeckOfCards());
+	}
+
+	// Returns the index of the next hand to use
+	private int nextHand(){
+		next = (next + 1) & (HAND_COUNT - 1);
+		return next;
+	}
+
+	/**
+	 * Sorts and classifies a new set of cards, the work done each time a hand changes
+	 * The hand sorts the dealt array in place, which does not change the cards in it
+	 */
+	@Benchmark
+	public int classifyNewCards(){
+		scratchHand.setHand(dealtCards[nextHand()]);
+		return scratchHand.getGameValue();
+	}
+
+	@Benchmark
+	public int getGameValue(){
+		return hands[nextHand()].getGameValue();
+	}
+
+	@Benchmark
+	public int evaluateTable(){
+		return HandEvaluator.evaluate(dealtCards[nextHand()]);
+	}
+
+	@Benchmark
+	public int evaluateBitwise(){
+		return SevenCardEvaluator.evaluate(CardSet.of(dealtCards[nextHand()]));
+	}
+
+	/**
+	 * Discard probabilities of all five cards of a hand
+	 */
+	@Benchmark
+	public int getDiscardProbability(){
+		HandOfCards hand = hands[nextHand()];
+		int total = 0;
+		for (int i=0; i<HandOfCards.CARDS_HELD; i++){
+			total += hand.getDiscardProbability(i);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public boolean isBrokenStraight(){
+		return hands[nextHand()].isBrokenStraight();
+	}
+
+	@Benchmark
+	public String handToString(){
+		return hands[nextHand()].toString();
+	}
+
+}